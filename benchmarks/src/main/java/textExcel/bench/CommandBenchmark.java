@@ -0,0 +1,63 @@
+package textExcel.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import textExcel.ColumnarCellStorage;
+import textExcel.Spreadsheet;
+
+/**
+ * Measures processCommand end to end: tokenizing, dispatching, recalculating and redrawing the view
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBenchmark {
+    @Param({"20", "1000", "100000"})
+    public int rows;
+
+    @Param({"0.1", "0.5"})
+    public double formulaDensity;
+
+    @Param({"default", "columnar"})
+    public String storage;
+
+    private Spreadsheet sheet;
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        sheet = storage.equals("columnar") ? new Spreadsheet(rows, 10, new ColumnarCellStorage(10)) : new Spreadsheet(rows, 10);
+        Sheets.fill(sheet, rows, 10, formulaDensity, 42);
+    }
+
+    @Benchmark
+    public String assignValue() {
+        // the top row feeds every formula chain below it
+        return sheet.processCommand("A1 = " + (counter++ & 1023));
+    }
+
+    @Benchmark
+    public String assignFormula() {
+        return sheet.processCommand("B1 = ( A1 * " + ((counter++ & 7) + 1) + " )");
+    }
+
+    @Benchmark
+    public String queryCell() {
+        return sheet.processCommand("C2");
+    }
+}
@@ -0,0 +1,60 @@
+package textExcel.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import textExcel.FormulaCell;
+import textExcel.Spreadsheet;
+
+/**
+ * Measures formula evaluation and recalculation along reference chains of different depths
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormulaBenchmark {
+    @Param({"10", "100", "1000"})
+    public int chainDepth;
+
+    private Spreadsheet sheet;
+    private FormulaCell last;
+    private int counter;
+
+    @Setup
+    public void setUp() {
+        sheet = Sheets.chain(new Spreadsheet(chainDepth, 1), chainDepth);
+        last = (FormulaCell) sheet.getCell(chainDepth - 1, 0);
+    }
+
+    @Benchmark
+    public double evaluate() {
+        // a single evaluation of the deepest formula, its precedents are already calculated
+        last.recalculate();
+        return last.getDoubleValue();
+    }
+
+    @Benchmark
+    public double cachedValue() {
+        return last.getDoubleValue();
+    }
+
+    @Benchmark
+    public String recalculateChain() {
+        // changing the head of the chain dirties every formula in it
+        return sheet.processCommand("A1 = " + (counter++ & 1023));
+    }
+}
@@ -0,0 +1,58 @@
+package textExcel.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import textExcel.GridView;
+import textExcel.Spreadsheet;
+
+/**
+ * Measures turning a populated sheet into grid text
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+    @Param({"20", "200", "2000"})
+    public int rows;
+
+    @Param({"0.0", "0.5"})
+    public double formulaDensity;
+
+    private Spreadsheet sheet;
+
+    @Setup
+    public void setUp() {
+        sheet = Sheets.fill(new Spreadsheet(rows, 12), rows, 12, formulaDensity, 42);
+    }
+
+    @Benchmark
+    public String gridText() {
+        return sheet.getGridText();
+    }
+
+    @Benchmark
+    public String freshWindow() {
+        // a window nothing has rendered before, so every row is drawn
+        return new GridView(sheet, 0, 0, rows, 12).getText();
+    }
+
+    @Benchmark
+    public String viewText() {
+        return sheet.getViewText();
+    }
+}
@@ -0,0 +1,54 @@
+package textExcel.bench;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import textExcel.Spreadsheet;
+import textExcel.SpreadsheetLocation;
+
+/**
+ * Builds populated spreadsheets for the benchmarks
+ */
+final class Sheets {
+    private Sheets() {
+    }
+
+    /**
+     * Fills a block of a spreadsheet with a mix of values and formulas
+     * Every formula references the cell above it, so long runs of formulas form reference chains.
+     * @param sheet the spreadsheet to fill
+     * @param rows the number of rows to fill
+     * @param columns the number of columns to fill
+     * @param formulaDensity the fraction of cells below the first row that hold a formula
+     * @param seed the seed for choosing which cells are formulas
+     * @return {@code sheet}
+     */
+    static Spreadsheet fill(Spreadsheet sheet, int rows, int columns, double formulaDensity, long seed) {
+        Random random = new Random(seed);
+        ArrayList<String> commands = new ArrayList<>(rows * columns);
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++) {
+                String cell = SpreadsheetLocation.cellName(row, col);
+                if (row > 0 && random.nextDouble() < formulaDensity) {
+                    commands.add(cell + " = ( " + SpreadsheetLocation.cellName(row - 1, col) + " + 1 )");
+                } else {
+                    commands.add(cell + " = " + random.nextInt(1000));
+                }
+            }
+        }
+
+        sheet.processBatch(commands, output -> { });
+        return sheet;
+    }
+
+    /**
+     * Builds a single column where every cell below the first is a formula referencing the cell above
+     * @param sheet the spreadsheet to fill
+     * @param depth the length of the chain
+     * @return {@code sheet}
+     */
+    static Spreadsheet chain(Spreadsheet sheet, int depth) {
+        return fill(sheet, depth, 1, 1.0, 0);
+    }
+}
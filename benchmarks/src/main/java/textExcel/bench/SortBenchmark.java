@@ -0,0 +1,55 @@
+package textExcel.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import textExcel.Spreadsheet;
+import textExcel.SpreadsheetLocation;
+
+/**
+ * Measures sorting a column of mixed values and formulas
+ * Each invocation sorts in the opposite direction of the last one, so every sort has to move everything.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SortBenchmark {
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"0.0", "0.5"})
+    public double formulaDensity;
+
+    private Spreadsheet sheet;
+    private String sortAscending;
+    private String sortDescending;
+    private boolean ascending;
+
+    @Setup
+    public void setUp() {
+        sheet = Sheets.fill(new Spreadsheet(rows, 1), rows, 1, formulaDensity, 42);
+        String range = "A1-" + SpreadsheetLocation.cellName(rows - 1, 0);
+        sortAscending = "sorta " + range;
+        sortDescending = "sortd " + range;
+    }
+
+    @Benchmark
+    public String sort() {
+        ascending = !ascending;
+        return sheet.processCommand(ascending ? sortAscending : sortDescending);
+    }
+}
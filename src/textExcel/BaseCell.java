@@ -11,11 +11,23 @@ package textExcel;
  */
 public abstract class BaseCell implements Cell{
     protected final String rawInput;
+    // abbreviated text is cached, the grid asks for it on every redraw
+    private String abbreviation;
     
     public BaseCell(String input) {
         this.rawInput = input;
     }
     
+    /**
+     * @param a a cell
+     * @param b another cell
+     * @return true if both cells are the same kind of cell made from the same input
+     */
+    static boolean sameContent(Cell a, Cell b) {
+        if (a == b) return true;
+        return a.getClass() == b.getClass() && ((BaseCell) a).rawInput.equals(((BaseCell) b).rawInput);
+    }
+    
     /**
      * @return text for spreadsheet cell display, must be exactly length 10
      */
@@ -29,6 +41,22 @@ public abstract class BaseCell implements Cell{
      */
     @Override
     public String abbreviatedCellText() {
+        if (abbreviation == null) abbreviation = abbreviate();
+        return abbreviation;
+    }
+    
+    /**
+     * Builds the text returned by {@link #abbreviatedCellText()}, only called when the cached text is missing
+     * @return text for spreadsheet cell display, must be exactly length 10
+     */
+    protected String abbreviate() {
         return (rawInput + "          ").substring(0, 10);
     }
+    
+    /**
+     * Throws away the cached abbreviated text, for cells whose display can change
+     */
+    protected void invalidateAbbreviation() {
+        abbreviation = null;
+    }
 }
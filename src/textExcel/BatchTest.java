@@ -0,0 +1,83 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchTest {
+    private Spreadsheet sheet;
+    private ArrayList<String> output;
+    
+    @Before
+    public void createSheet() {
+        sheet = new Spreadsheet();
+        output = new ArrayList<>();
+    }
+    
+    @Test
+    public void testBatchMatchesCommandByCommand() {
+        String[] commands = {"A1 = 1", "A2 = ( A1 + 1 )", "A3 = ( SUM A1-A2 )", "A1 = 10", "B1 = \"done\""};
+        Spreadsheet expected = new Spreadsheet();
+        for (String command : commands) expected.processCommand(command);
+        
+        String view = sheet.processBatch(Arrays.asList(commands), output::add);
+        assertEquals(expected.getGridText(), view);
+        assertTrue("edits display nothing in batch mode", output.isEmpty());
+        assertEquals(21, ((FormulaCell) sheet.getCell("A3")).getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testQueriesAndErrorsAreOutput() {
+        sheet.processBatch(Arrays.asList("A1 = 4", "A1", "Q99 = 1", "bogus command", ""), output::add);
+        assertEquals(3, output.size());
+        assertEquals("4", output.get(0));
+        assertTrue(output.get(1).startsWith("ERROR"));
+        assertTrue(output.get(2).startsWith("ERROR"));
+    }
+    
+    @Test
+    public void testFailingCommandDoesntEndBatch() {
+        // a storage that fails the way a bug would, on one cell
+        Spreadsheet failing = new Spreadsheet(20, 12, new DenseCellStorage(20, 12) {
+            @Override
+            public void set(int row, int col, Cell cell) {
+                if (row == 1 && col == 1) throw new IllegalStateException("broken cell");
+                super.set(row, col, cell);
+            }
+        });
+        failing.processBatch(Arrays.asList("A1 = 1", "B2 = 2", "A2 = ( A1 + 1 )"), output::add);
+        assertEquals(Arrays.asList("ERROR: line 2: broken cell"), output);
+        assertEquals(2, ((FormulaCell) failing.getCell("A2")).getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testPrintRedrawsInsideBatch() {
+        sheet.processBatch(Arrays.asList("A1 = 2", "B1 = ( A1 * 2 )", "print", "A1 = 3"), output::add);
+        assertEquals(1, output.size());
+        assertTrue(output.get(0).split("\n")[1].startsWith("1  |2.0       |4.0       |"));
+        assertEquals(6, ((FormulaCell) sheet.getCell("B1")).getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testSortSeesDeferredFormulas() {
+        // the formula is still uncalculated when the sort runs, it is calculated first so it sorts as 9
+        sheet.processBatch(Arrays.asList("A1 = 5", "A2 = ( A1 - 4 )", "C1 = 2", "C2 = ( A2 * 9 )", "sortd C1-C2"), output::add);
+        assertTrue(output.isEmpty());
+        assertEquals("( A2 * 9 )", sheet.processCommand("C1"));
+        assertEquals("2", sheet.processCommand("C2"));
+    }
+    
+    @Test
+    public void testNormalModeAfterBatch() {
+        sheet.processBatch(Arrays.asList("A1 = 1"), output::add);
+        // commands outside a batch redraw straight away again
+        assertFalse(sheet.processCommand("A2 = 2").isEmpty());
+    }
+}
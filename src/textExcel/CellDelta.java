@@ -0,0 +1,78 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.Arrays;
+
+/**
+ * The cells changed by one command, as what each cell was before and after, for undo and redo
+ *
+ * Changes are kept in parallel arrays in the order they were made. Undoing puts the old cells back in
+ * reverse order and redoing puts the new cells back in order, so a cell changed more than once by the
+ * same command still ends up right. A bulk command like clear or sort is one delta.
+ */
+public class CellDelta {
+    private long[] keys = new long[8];
+    private Cell[] before = new Cell[8];
+    private Cell[] after = new Cell[8];
+    private int size;
+
+    /**
+     * Records one change
+     * @param key the packed location of the cell
+     * @param oldCell the cell before the change
+     * @param newCell the cell after the change
+     */
+    public void add(long key, Cell oldCell, Cell newCell) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            before = Arrays.copyOf(before, size * 2);
+            after = Arrays.copyOf(after, size * 2);
+        }
+        keys[size] = key;
+        before[size] = oldCell;
+        after[size] = newCell;
+        size++;
+    }
+
+    /**
+     * Drops the spare room left from growing, once nothing more will be added
+     */
+    public void trim() {
+        keys = Arrays.copyOf(keys, size);
+        before = Arrays.copyOf(before, size);
+        after = Arrays.copyOf(after, size);
+    }
+
+    /**
+     * @return the number of changes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i the index of a change
+     * @return the packed location of the cell changed
+     */
+    public long getKey(int i) {
+        return keys[i];
+    }
+
+    /**
+     * @param i the index of a change
+     * @return the cell before the change
+     */
+    public Cell getBefore(int i) {
+        return before[i];
+    }
+
+    /**
+     * @param i the index of a change
+     * @return the cell after the change
+     */
+    public Cell getAfter(int i) {
+        return after[i];
+    }
+}
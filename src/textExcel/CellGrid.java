@@ -0,0 +1,16 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+/**
+ * A grid whose cells can be looked up by index, without building a Location first
+ */
+public interface CellGrid extends Grid {
+    /**
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @return the cell at {@code row}, {@code col}
+     */
+    Cell getCell(int row, int col);
+}
@@ -0,0 +1,62 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+/**
+ * A rectangular range of cells, like A1-B4, bounds are inclusive
+ */
+public class CellRange {
+    private final int top;
+    private final int left;
+    private final int bottom;
+    private final int right;
+    
+    public CellRange(int top, int left, int bottom, int right) {
+        this.top = top;
+        this.left = left;
+        this.bottom = bottom;
+        this.right = right;
+    }
+    
+    /**
+     * Constructor from two corners
+     * @param start the top left corner
+     * @param end the bottom right corner
+     */
+    public CellRange(Location start, Location end) {
+        this(start.getRow(), start.getCol(), end.getRow(), end.getCol());
+    }
+    
+    public int getTop() {
+        return top;
+    }
+    
+    public int getLeft() {
+        return left;
+    }
+    
+    public int getBottom() {
+        return bottom;
+    }
+    
+    public int getRight() {
+        return right;
+    }
+    
+    /**
+     * @return the number of cells in the range, 0 if the corners are backwards
+     */
+    public long getArea() {
+        return (long) Math.max(0, bottom - top + 1) * Math.max(0, right - left + 1);
+    }
+    
+    /**
+     * @param row the row to check
+     * @param col the column to check
+     * @return true if the cell at {@code row}, {@code col} is in this range
+     */
+    public boolean contains(int row, int col) {
+        return row >= top && row <= bottom && col >= left && col <= right;
+    }
+}
@@ -0,0 +1,66 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+/**
+ * Backing storage for the cells of a spreadsheet
+ *
+ * Empty cells are never stored, an unpopulated slot simply reads back as {@link EmptyCell#INSTANCE},
+ * so implementations only need memory for the cells that actually hold something.
+ */
+public interface CellStorage {
+    /**
+     * @param row the row to query
+     * @param col the column to query
+     * @return the cell at {@code row}, {@code col}, or {@link EmptyCell#INSTANCE} if nothing is there
+     */
+    Cell get(int row, int col);
+    
+    /**
+     * @param row the row to set
+     * @param col the column to set
+     * @param cell the cell to store, an EmptyCell or null clears the slot
+     */
+    void set(int row, int col, Cell cell);
+    
+    /**
+     * Clears every slot
+     */
+    void clear();
+    
+    /**
+     * Visits every populated slot, in no particular order
+     * @param visitor the visitor to call for each populated cell
+     */
+    void forEach(CellVisitor visitor);
+    
+    /**
+     * Takes a copy of every slot that changes to either storage afterward don't affect
+     * @return the copy, or null if this storage can't be copied without copying every cell
+     */
+    default CellStorage snapshot() {
+        return null;
+    }
+    
+    /**
+     * Visits every slot whose cell differs from the same slot of another storage, in no particular order
+     * @param other the storage to compare to
+     * @param visitor called with the cell of this storage, an EmptyCell where only {@code other} holds something
+     */
+    default void forEachDifference(CellStorage other, CellVisitor visitor) {
+        forEach((row, col, cell) -> {
+            if (!BaseCell.sameContent(cell, other.get(row, col))) visitor.visit(row, col, cell);
+        });
+        other.forEach((row, col, cell) -> {
+            if (get(row, col) instanceof EmptyCell) visitor.visit(row, col, EmptyCell.INSTANCE);
+        });
+    }
+    
+    /**
+     * Callback for {@link #forEach(CellVisitor)}
+     */
+    interface CellVisitor {
+        void visit(int row, int col, Cell cell);
+    }
+}
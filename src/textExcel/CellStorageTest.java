@@ -0,0 +1,132 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class CellStorageTest {
+    private static final int ROWS = 300;
+    private static final int COLUMNS = 40;
+    
+    /**
+     * Helper method to set and clear random cells, checking the storage against a map after every step
+     * @param cells the storage to check, empty
+     */
+    static void checkAgainstMap(CellStorage cells) {
+        HashMap<Long, Cell> expected = new HashMap<>();
+        Random random = new Random(42);
+        
+        for (int step = 0; step < 5000; step++) {
+            int row = random.nextInt(ROWS);
+            int col = random.nextInt(COLUMNS);
+            long key = SpreadsheetLocation.pack(row, col);
+            
+            switch (random.nextInt(4)) {
+                case 0:
+                    cells.set(row, col, EmptyCell.INSTANCE);
+                    expected.remove(key);
+                    break;
+                case 1:
+                    Cell text = new TextCell("\"" + step + "\"");
+                    cells.set(row, col, text);
+                    expected.put(key, text);
+                    break;
+                default:
+                    Cell value = new ValueCell(Integer.toString(step));
+                    cells.set(row, col, value);
+                    expected.put(key, value);
+            }
+            Cell cell = cells.get(row, col);
+            Cell wanted = expected.get(key);
+            if (wanted == null) assertTrue(cell instanceof EmptyCell);
+            else assertEquals(wanted.fullCellText(), cell.fullCellText());
+        }
+        
+        HashMap<Long, Cell> visited = new HashMap<>();
+        cells.forEach((row, col, cell) -> {
+            assertFalse("empty cells aren't visited", cell instanceof EmptyCell);
+            assertNull("every cell is visited once", visited.put(SpreadsheetLocation.pack(row, col), cell));
+        });
+        assertEquals(expected.keySet(), visited.keySet());
+        
+        cells.clear();
+        cells.forEach((row, col, cell) -> fail("nothing is left after clear"));
+        assertTrue(cells.get(0, 0) instanceof EmptyCell);
+    }
+    
+    @Test
+    public void testDenseStorage() {
+        checkAgainstMap(new DenseCellStorage(ROWS, COLUMNS));
+    }
+    
+    @Test
+    public void testTiledStorage() {
+        checkAgainstMap(new TiledCellStorage());
+    }
+    
+    @Test
+    public void testColumnarStorage() {
+        checkAgainstMap(new ColumnarCellStorage(COLUMNS));
+    }
+    
+    @Test
+    public void testColumnarNumbersKeepTheirInput() {
+        ColumnarCellStorage cells = new ColumnarCellStorage(2);
+        String[] inputs = {"5.50", "7", "-0", "0.1", "1e3", "100000000000000000000", "12.5%", "3%", "-0.0%"};
+        for (int i = 0; i < inputs.length; i++) {
+            cells.set(i, 1, inputs[i].endsWith("%") ? new PercentCell(inputs[i]) : new ValueCell(inputs[i]));
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            Cell cell = cells.get(i, 1);
+            assertEquals(inputs[i], ((BaseCell) cell).rawInput);
+            assertEquals(inputs[i].endsWith("%") ? PercentCell.class : ValueCell.class, cell.getClass());
+        }
+    }
+    
+    @Test
+    public void testColumnarReadsReuseCells() {
+        ColumnarCellStorage cells = new ColumnarCellStorage(1);
+        cells.set(3, 0, new ValueCell("2.5"));
+        Cell cell = cells.get(3, 0);
+        // the same cell comes back, along with its cached abbreviated text
+        assertSame(cell, cells.get(3, 0));
+        assertSame(cell.abbreviatedCellText(), cells.get(3, 0).abbreviatedCellText());
+        
+        cells.set(3, 0, new PercentCell("40%"));
+        assertNotSame(cell, cells.get(3, 0));
+        assertEquals("40%", ((BaseCell) cells.get(3, 0)).rawInput);
+        
+        // a snapshot taken after the read keeps the old cell when the storage is written again
+        CellStorage snapshot = cells.snapshot();
+        Cell before = cells.get(3, 0);
+        cells.set(3, 0, new ValueCell("1"));
+        assertSame(before, snapshot.get(3, 0));
+        assertEquals("1", cells.get(3, 0).fullCellText());
+    }
+    
+    @Test
+    public void testTiledStorageFarApart() {
+        TiledCellStorage cells = new TiledCellStorage();
+        cells.set(0, 0, new ValueCell("1"));
+        cells.set(SpreadsheetLocation.MAX_ROWS - 1, SpreadsheetLocation.MAX_COLUMNS - 1, new ValueCell("2"));
+        assertEquals("1", cells.get(0, 0).fullCellText());
+        assertEquals("2", cells.get(SpreadsheetLocation.MAX_ROWS - 1, SpreadsheetLocation.MAX_COLUMNS - 1).fullCellText());
+        assertTrue(cells.get(SpreadsheetLocation.MAX_ROWS / 2, 7) instanceof EmptyCell);
+    }
+    
+    @Test
+    public void testHugeSpreadsheet() {
+        // only the populated cells take any memory, the grid itself is never allocated
+        Spreadsheet sheet = new Spreadsheet(SpreadsheetLocation.MAX_ROWS, 26);
+        sheet.processCommand("A1 = 5");
+        sheet.processCommand("Z1048576 = ( A1 * 2 )");
+        assertEquals("10.0", sheet.getCell("Z1048576").abbreviatedCellText().trim());
+        assertTrue(sheet.getCell("M500000") instanceof EmptyCell);
+    }
+}
@@ -0,0 +1,266 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cell storage that keeps plain numbers as primitives, one column at a time
+ *
+ * Each column holds a {@code double[]} of values and a {@code byte[]} of type tags, so a ValueCell or
+ * PercentCell costs nine bytes instead of a cell object and its input string. Cell objects for numbers
+ * are only built when they are read. Text and formula cells are kept as objects, since they carry more
+ * than a number. The input of a number is only kept as a string when it can't be rebuilt from the value,
+ * like "5.50" or "1e3". A number read through {@link #get(int, int)} keeps the cell built for it until
+ * its slot is written again, so a redraw reuses the cell and its cached abbreviated text.
+ *
+ * Spreadsheet never picks this storage on its own, pass it to {@link Spreadsheet#Spreadsheet(int, int, CellStorage)}.
+ *
+ * A snapshot shares every column with the storage it was taken from. Like the tiles of
+ * {@link TiledCellStorage}, a column is stamped with the epoch of the storage that owns it and is copied
+ * before the first write from any other.
+ */
+public class ColumnarCellStorage implements CellStorage {
+    private static final byte EMPTY = 0;
+    private static final byte VALUE = 1;
+    private static final byte PERCENT = 2;
+    private static final byte OBJECT = 3;
+    private static final AtomicInteger EPOCHS = new AtomicInteger();
+
+    private Column[] columns;
+    // columns stamped with this epoch belong to this storage alone and can be written in place
+    private int epoch = EPOCHS.incrementAndGet();
+    // whether the array of columns is still shared with a snapshot
+    private boolean columnsShared;
+
+    public ColumnarCellStorage(int columns) {
+        this.columns = new Column[columns];
+    }
+
+    /**
+     * Constructor for a snapshot, shares every column of the storage it was taken from
+     */
+    private ColumnarCellStorage(Column[] columns) {
+        this.columns = columns;
+        this.columnsShared = true;
+    }
+
+    @Override
+    public Cell get(int row, int col) {
+        Column column = columns[col];
+        if (column == null || row >= column.tags.length) return EmptyCell.INSTANCE;
+
+        byte tag = column.tags[row];
+        if (tag == OBJECT) return column.objects[row];
+        if (tag == EMPTY) return EmptyCell.INSTANCE;
+
+        // reads can come from several threads at once, the worst a race does is build a cell twice
+        Cell[] built = column.built;
+        if (built == null) column.built = built = new Cell[column.tags.length];
+        Cell cell = built[row];
+        if (cell == null) built[row] = cell = column.build(row);
+        return cell;
+    }
+
+    @Override
+    public void set(int row, int col, Cell cell) {
+        Column column = columns[col];
+        if (cell instanceof EmptyCell || cell == null) {
+            // clearing a slot that is already empty is a no-op, and doesn't copy a shared column
+            if (column != null && row < column.tags.length && column.tags[row] != EMPTY) writableColumn(col).clear(row);
+            return;
+        }
+
+        column = column == null ? newColumn(col) : writableColumn(col);
+        column.ensureCapacity(row);
+        column.clear(row);
+
+        if (cell instanceof ValueCell) {
+            column.setNumber(row, VALUE, ((ValueCell) cell).rawInput, "");
+        } else if (cell instanceof PercentCell) {
+            column.setNumber(row, PERCENT, ((PercentCell) cell).rawInput, "%");
+        } else {
+            if (column.objects == null) column.objects = new Cell[column.tags.length];
+            column.tags[row] = OBJECT;
+            column.objects[row] = cell;
+        }
+    }
+
+    @Override
+    public void clear() {
+        // a shared array of columns is left to the snapshot
+        columns = new Column[columns.length];
+        columnsShared = false;
+    }
+
+    /**
+     * Takes a snapshot that shares every column, only the array of columns is copied once either storage writes
+     */
+    @Override
+    public CellStorage snapshot() {
+        ColumnarCellStorage snapshot = new ColumnarCellStorage(columns);
+        columnsShared = true;
+        epoch = EPOCHS.incrementAndGet();
+        return snapshot;
+    }
+
+    /**
+     * Helper method to get a column for writing, copying it first if it is shared with a snapshot
+     * @param col the index of an allocated column
+     * @return the column, owned by this storage alone
+     */
+    private Column writableColumn(int col) {
+        if (columns[col].epoch != epoch) {
+            unshareColumns();
+            columns[col] = columns[col].copy(epoch);
+        }
+        return columns[col];
+    }
+
+    /**
+     * Helper method to allocate an empty column
+     * @param col the index of the column
+     * @return the new column
+     */
+    private Column newColumn(int col) {
+        unshareColumns();
+        return columns[col] = new Column(epoch);
+    }
+
+    /**
+     * Helper method to copy the array of columns if it is still shared with a snapshot
+     */
+    private void unshareColumns() {
+        if (!columnsShared) return;
+        columns = columns.clone();
+        columnsShared = false;
+    }
+
+    @Override
+    public void forEach(CellVisitor visitor) {
+        for (int col = 0; col < columns.length; col++) {
+            if (columns[col] == null) continue;
+
+            byte[] tags = columns[col].tags;
+            for (int row = 0; row < tags.length; row++) {
+                // visiting everything doesn't fill the cache, a built cell is only kept if somebody has it already
+                if (tags[row] == OBJECT) visitor.visit(row, col, columns[col].objects[row]);
+                else if (tags[row] != EMPTY) visitor.visit(row, col, columns[col].builtOrBuild(row));
+            }
+        }
+    }
+
+    /**
+     * Helper method to write a number the way it would be written by hand, the inverse of parsing it
+     * @param value the number to format
+     * @return {@code value} without a trailing ".0" if it is a whole number
+     */
+    static String format(double value) {
+        if (value == (long) value && !(value == 0 && 1 / value < 0)) return Long.toString((long) value);
+        return Double.toString(value);
+    }
+
+    /**
+     * The slots of one column, only as many rows as have been written to
+     */
+    private static class Column {
+        private double[] values = new double[64];
+        private byte[] tags = new byte[64];
+        // only allocated once the column holds a text or formula cell
+        private Cell[] objects;
+        // only allocated once the column holds a number that can't be rebuilt from its value
+        private String[] inputs;
+        // the cells built for numbers that have been read, only allocated once one is
+        private Cell[] built;
+        // the epoch of the storage that owns the column
+        private final int epoch;
+
+        private Column(int epoch) {
+            this.epoch = epoch;
+        }
+
+        /**
+         * @param epoch the epoch of the storage the copy is for
+         * @return a copy of the column that can be written without affecting this one
+         */
+        private Column copy(int epoch) {
+            Column copy = new Column(epoch);
+            copy.values = values.clone();
+            copy.tags = tags.clone();
+            if (objects != null) copy.objects = objects.clone();
+            if (inputs != null) copy.inputs = inputs.clone();
+            if (built != null) copy.built = built.clone();
+            return copy;
+        }
+
+        /**
+         * Grows the arrays by doubling until {@code row} fits
+         * @param row the row that has to fit
+         */
+        private void ensureCapacity(int row) {
+            if (row < tags.length) return;
+
+            int capacity = tags.length;
+            while (row >= capacity) capacity *= 2;
+            values = Arrays.copyOf(values, capacity);
+            tags = Arrays.copyOf(tags, capacity);
+            if (objects != null) objects = Arrays.copyOf(objects, capacity);
+            if (inputs != null) inputs = Arrays.copyOf(inputs, capacity);
+            if (built != null) built = Arrays.copyOf(built, capacity);
+        }
+
+        private void clear(int row) {
+            tags[row] = EMPTY;
+            values[row] = 0;
+            if (objects != null) objects[row] = null;
+            if (inputs != null) inputs[row] = null;
+            if (built != null) built[row] = null;
+        }
+
+        /**
+         * Stores a number, keeping its input string only if it can't be rebuilt from the number
+         * @param row the row to set
+         * @param tag VALUE or PERCENT
+         * @param input the input the cell was created from
+         * @param suffix the text following the number in {@code input}
+         */
+        private void setNumber(int row, byte tag, String input, String suffix) {
+            double value = Double.parseDouble(input.substring(0, input.length() - suffix.length()));
+            tags[row] = tag;
+            values[row] = value;
+
+            if (!input.equals(format(value) + suffix)) {
+                if (inputs == null) inputs = new String[tags.length];
+                inputs[row] = input;
+            }
+        }
+
+        /**
+         * @param row the row of a number
+         * @return a new cell for the number
+         */
+        private Cell build(int row) {
+            return tags[row] == VALUE ? new ValueCell(inputOf(row, "")) : new PercentCell(inputOf(row, "%"));
+        }
+
+        /**
+         * @param row the row of a number
+         * @return the cell already built for the number, or a new one that isn't kept
+         */
+        private Cell builtOrBuild(int row) {
+            return built != null && built[row] != null ? built[row] : build(row);
+        }
+
+        /**
+         * @param row the row of a number
+         * @param suffix the text following the number in its input
+         * @return the input the number was created from
+         */
+        private String inputOf(int row, String suffix) {
+            if (inputs != null && inputs[row] != null) return inputs[row];
+            return format(values[row]) + suffix;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The most recent commands of a session, kept in a fixed size ring buffer
+ *
+ * Adding a command and dropping the oldest ones only move the ends of the ring, nothing is shifted, so
+ * recording history costs the same no matter how long it is. Commands can also be appended to a history
+ * file that outlives the ring. The file is written in batches, so it costs a write every few commands
+ * rather than one per command.
+ */
+public class CommandHistory implements Closeable {
+    private static final int FILE_BATCH_SIZE = 32;
+
+    private String[] ring;
+    // index of the oldest command
+    private int start;
+    private int size;
+
+    private BufferedWriter file;
+    private int unflushed;
+
+    /**
+     * @param capacity the most commands kept, older ones are dropped as new ones come in
+     */
+    public CommandHistory(int capacity) {
+        ring = new String[capacity];
+    }
+
+    /**
+     * Adds a command, dropping the oldest one if the history is full
+     * @param command the command
+     * @throws IOException if the history file can't be written
+     */
+    public void add(String command) throws IOException {
+        if (ring.length == 0) {
+            // a history of no commands keeps nothing, the file still gets every command
+        } else if (size == ring.length) {
+            ring[start] = command;
+            start = (start + 1) % ring.length;
+        } else {
+            ring[(start + size) % ring.length] = command;
+            size++;
+        }
+
+        if (file != null) {
+            file.write(command);
+            file.newLine();
+            if (++unflushed >= FILE_BATCH_SIZE) flush();
+        }
+    }
+
+    /**
+     * Drops the oldest commands
+     * @param count how many commands to drop, everything if there are fewer
+     */
+    public void removeOldest(int count) {
+        count = Math.min(count, size);
+        if (count == 0) return;
+        for (int i = 0; i < count; i++) ring[(start + i) % ring.length] = null;
+        start = (start + count) % ring.length;
+        size -= count;
+    }
+
+    /**
+     * Drops every command, the history file is left alone
+     */
+    public void clear() {
+        removeOldest(size);
+        start = 0;
+    }
+
+    /**
+     * Changes how many commands are kept, keeping the newest ones if there are too many
+     * @param capacity the most commands kept
+     */
+    public void resize(int capacity) {
+        if (capacity == ring.length) return;
+
+        int kept = Math.min(size, capacity);
+        String[] newRing = new String[capacity];
+        for (int i = 0; i < kept; i++) newRing[i] = ring[(start + size - kept + i) % ring.length];
+        ring = newRing;
+        start = 0;
+        size = kept;
+    }
+
+    /**
+     * @return the number of commands kept
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i how far back to look, 0 for the newest command
+     * @return the command
+     */
+    public String get(int i) {
+        return ring[(start + size - 1 - i) % ring.length];
+    }
+
+    /**
+     * @param text the text to look for
+     * @return every kept command containing {@code text}, newest first, one per line
+     */
+    public String search(String text) {
+        StringBuilder found = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (get(i).contains(text)) {
+                if (found.length() > 0) found.append('\n');
+                found.append(get(i));
+            }
+        }
+        return found.toString();
+    }
+
+    /**
+     * @return every kept command, newest first, one per line
+     */
+    @Override
+    public String toString() {
+        return search("");
+    }
+
+    /**
+     * Starts appending every added command to a file, closing the previous file if there was one
+     * @param path the file, created if it doesn't exist, or null to stop writing a file
+     * @throws IOException if the file can't be opened
+     */
+    public void setFile(Path path) throws IOException {
+        close();
+        if (path != null) {
+            file = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Writes out commands still waiting for a batch to fill up
+     * @throws IOException if the history file can't be written
+     */
+    public void flush() throws IOException {
+        if (file == null) return;
+        file.flush();
+        unflushed = 0;
+    }
+
+    /**
+     * Flushes and closes the history file, the kept commands stay
+     * @throws IOException if the history file can't be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (file == null) return;
+        try {
+            file.close();
+        } finally {
+            file = null;
+            unflushed = 0;
+        }
+    }
+}
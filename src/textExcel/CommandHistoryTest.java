@@ -0,0 +1,120 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CommandHistoryTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testRingWrapsAround() throws IOException {
+        CommandHistory history = new CommandHistory(3);
+        for (int i = 1; i <= 7; i++) history.add("c" + i);
+        assertEquals(3, history.size());
+        assertEquals("c7", history.get(0));
+        assertEquals("c5", history.get(2));
+        assertEquals("c7\nc6\nc5", history.toString());
+        
+        history.removeOldest(2);
+        assertEquals("c7", history.toString());
+        history.add("c8");
+        history.add("c9");
+        history.add("c10");
+        assertEquals("c10\nc9\nc8", history.toString());
+        history.removeOldest(10);
+        assertEquals(0, history.size());
+        assertEquals("", history.toString());
+    }
+    
+    @Test
+    public void testResizeKeepsNewest() throws IOException {
+        CommandHistory history = new CommandHistory(4);
+        for (int i = 1; i <= 6; i++) history.add("c" + i);
+        history.resize(2);
+        assertEquals("c6\nc5", history.toString());
+        history.resize(5);
+        history.add("c7");
+        assertEquals("c7\nc6\nc5", history.toString());
+        
+        // a history of nothing keeps nothing
+        history.resize(0);
+        history.add("c8");
+        history.removeOldest(1);
+        history.clear();
+        assertEquals(0, history.size());
+    }
+    
+    @Test
+    public void testSearch() throws IOException {
+        CommandHistory history = new CommandHistory(10);
+        history.add("A1 = 1");
+        history.add("sorta A1-A3");
+        history.add("B2 = ( A1 + 1 )");
+        assertEquals("B2 = ( A1 + 1 )\nA1 = 1", history.search(" = "));
+        assertEquals("", history.search("sortd"));
+    }
+    
+    @Test
+    public void testHistoryFile() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("history.txt");
+        CommandHistory history = new CommandHistory(2);
+        history.setFile(path);
+        for (int i = 0; i < 40; i++) history.add("c" + i);
+        // a full batch is written before the file is closed, the rest waits
+        assertEquals(32, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+        history.close();
+        assertEquals(40, Files.readAllLines(path, StandardCharsets.UTF_8).size());
+        // the file outlives the ring
+        assertEquals(2, history.size());
+        
+        // a new file appends rather than replacing
+        history.setFile(path);
+        history.add("last");
+        history.setFile(null);
+        assertEquals("last", Files.readAllLines(path, StandardCharsets.UTF_8).get(40));
+    }
+    
+    @Test
+    public void testSpreadsheetCommands() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("history.txt");
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1");
+        assertEquals("", sheet.processCommand("history display"));
+        
+        sheet.processCommand("history start 3");
+        sheet.processCommand("history file " + path);
+        for (int i = 1; i <= 4; i++) sheet.processCommand("A" + i + " = " + i);
+        assertEquals("A4 = 4\nA3 = 3\nA2 = 2", sheet.processCommand("history display"));
+        assertEquals("A3 = 3", sheet.processCommand("history search A3"));
+        sheet.processCommand("history clear 2");
+        assertEquals("A4 = 4", sheet.processCommand("history display"));
+        
+        sheet.closeHistory();
+        assertEquals(Arrays.asList("A1 = 1", "A2 = 2", "A3 = 3", "A4 = 4"), Files.readAllLines(path, StandardCharsets.UTF_8));
+        assertTrue(sheet.processCommand("history search").startsWith("ERROR"));
+        assertTrue(sheet.processCommand("history file a b").startsWith("ERROR"));
+        
+        // a history of no commands, or clearing none, is allowed
+        assertEquals("", sheet.processCommand("history start 0"));
+        sheet.processCommand("A1 = 3");
+        assertEquals("", sheet.processCommand("history display"));
+        assertEquals("", sheet.processCommand("history clear 0"));
+        assertEquals("ERROR: invalid history size", sheet.processCommand("history start -1"));
+        assertEquals("", sheet.processCommand("history stop"));
+        sheet.processCommand("A1 = 2");
+        assertEquals("", sheet.processCommand("history display"));
+    }
+}
@@ -0,0 +1,140 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.Arrays;
+
+/**
+ * A reusable tokenizer for command input
+ *
+ * A single pass over the input records where each whitespace separated token starts and ends,
+ * without creating any substrings. Tokens are compared, parsed as locations or parsed as numbers
+ * directly from the original text, and only turned into strings when a command actually needs one.
+ */
+public class CommandLine {
+    private CharSequence text = "";
+    private int[] starts = new int[8];
+    private int[] ends = new int[8];
+    private int count;
+    
+    /**
+     * Tokenizes new input, replacing whatever was tokenized before
+     * @param text the input to tokenize
+     * @return this command line
+     */
+    public CommandLine reset(CharSequence text) {
+        this.text = text;
+        count = 0;
+        
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            if (Character.isWhitespace(text.charAt(i))) continue;
+            
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            starts[count] = i;
+            while (i < length && !Character.isWhitespace(text.charAt(i))) i++;
+            ends[count++] = i;
+        }
+        return this;
+    }
+    
+    /**
+     * @return the number of tokens
+     */
+    public int size() {
+        return count;
+    }
+    
+    /**
+     * @param i the index of the token
+     * @return true if token {@code i} exists and equals {@code word}, ignoring case
+     */
+    public boolean matches(int i, String word) {
+        if (i >= count || ends[i] - starts[i] != word.length()) return false;
+        for (int j = 0; j < word.length(); j++) {
+            char c = text.charAt(starts[i] + j);
+            if (Character.toLowerCase(c) != Character.toLowerCase(word.charAt(j))) return false;
+        }
+        return true;
+    }
+    
+    /**
+     * @param i the index of the token
+     * @return the first character of token {@code i}, lower cased
+     */
+    public char firstChar(int i) {
+        return Character.toLowerCase(text.charAt(starts[i]));
+    }
+    
+    /**
+     * @param i the index of the token
+     * @return token {@code i} as a string
+     */
+    public String token(int i) {
+        return text.subSequence(starts[i], ends[i]).toString();
+    }
+    
+    /**
+     * @param i the index of the first token
+     * @return everything from the start of token {@code i} to the end of the last token, as typed
+     */
+    public String rest(int i) {
+        return text.subSequence(starts[i], ends[count - 1]).toString();
+    }
+    
+    /**
+     * @param i the index of the token
+     * @return the packed location named by token {@code i}, or -1 if it is not a cell name
+     */
+    public long location(int i) {
+        if (i >= count) return -1;
+        return SpreadsheetLocation.parse(text, starts[i], ends[i]);
+    }
+    
+    /**
+     * Parses a range like "A1-B4"
+     * @param i the index of the token
+     * @return the packed start and end locations of the range, or null if it is not a range
+     */
+    public long[] range(int i) {
+        if (i >= count) return null;
+        
+        for (int dash = starts[i]; dash < ends[i]; dash++) {
+            if (text.charAt(dash) != '-') continue;
+            
+            long start = SpreadsheetLocation.parse(text, starts[i], dash);
+            long end = SpreadsheetLocation.parse(text, dash + 1, ends[i]);
+            return start < 0 || end < 0 ? null : new long[] {start, end};
+        }
+        return null;
+    }
+    
+    /**
+     * @param i the index of the token
+     * @return the positive whole number in token {@code i}, or -1 if it is not one
+     */
+    public int count(int i) {
+        int value = wholeNumber(i);
+        return value > 0 ? value : -1;
+    }
+    
+    /**
+     * @param i the index of the token
+     * @return the whole number in token {@code i}, zero included, or -1 if it is not one
+     */
+    public int wholeNumber(int i) {
+        if (i >= count || ends[i] - starts[i] > 9) return -1;
+        
+        int value = 0;
+        for (int j = starts[i]; j < ends[i]; j++) {
+            char c = text.charAt(j);
+            if (c < '0' || c > '9') return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
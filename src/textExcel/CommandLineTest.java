@@ -0,0 +1,79 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class CommandLineTest {
+    @Test
+    public void testTokens() {
+        CommandLine line = new CommandLine().reset("  A1   =  ( B2 + 3 )  ");
+        assertEquals(7, line.size());
+        assertEquals("A1", line.token(0));
+        assertTrue(line.matches(1, "="));
+        assertEquals("( B2 + 3 )", line.rest(2));
+        assertFalse(line.matches(7, "x"));
+        
+        assertEquals(0, new CommandLine().reset(" \t ").size());
+    }
+    
+    @Test
+    public void testReuseAndGrowth() {
+        CommandLine line = new CommandLine();
+        StringBuilder many = new StringBuilder();
+        for (int i = 0; i < 50; i++) many.append("t").append(i).append(' ');
+        line.reset(many);
+        assertEquals(50, line.size());
+        assertEquals("t49", line.token(49));
+        
+        // resetting forgets the old tokens
+        line.reset("print");
+        assertEquals(1, line.size());
+        assertTrue(line.matches(0, "PRINT"));
+    }
+    
+    @Test
+    public void testParsing() {
+        CommandLine line = new CommandLine().reset("sorta b2-AA10 view 12 0 x7 -3");
+        assertArrayEquals(new long[] {SpreadsheetLocation.pack(1, 1), SpreadsheetLocation.pack(9, 26)}, line.range(1));
+        assertNull(line.range(2));
+        assertEquals(12, line.count(3));
+        assertEquals(-1, line.count(4));
+        assertEquals(0, line.wholeNumber(4));
+        assertEquals(-1, line.wholeNumber(5));
+        assertEquals(SpreadsheetLocation.pack(6, 23), line.location(5));
+        assertEquals(-1, line.location(6));
+        assertEquals(-1, line.location(7));
+        assertEquals('s', line.firstChar(0));
+    }
+    
+    @Test
+    public void testRegistry() {
+        CommandRegistry<StringBuilder> registry = new CommandRegistry<StringBuilder>()
+                .register("save", (out, line) -> "save " + line.token(1))
+                .register("sorta", (out, line) -> "sorta")
+                .setFallback((out, line) -> "cell " + line.token(0));
+        CommandLine line = new CommandLine();
+        StringBuilder target = new StringBuilder();
+        
+        assertEquals("save x", registry.lookup(line.reset("SAVE x")).execute(target, line));
+        assertEquals("sorta", registry.lookup(line.reset("sortA A1-A2")).execute(target, line));
+        // a command name alone is matched whole, not as a prefix
+        assertEquals("cell sort", registry.lookup(line.reset("sort")).execute(target, line));
+        assertEquals("cell 1", registry.lookup(line.reset("1")).execute(target, line));
+    }
+    
+    @Test
+    public void testSpreadsheetCommandsIgnoreCase() {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("a1 = 2");
+        sheet.processCommand("A2 = 1");
+        sheet.processCommand("SORTA a1-A2");
+        assertEquals("1", sheet.processCommand("A1"));
+        sheet.processCommand("CLEAR");
+        assertEquals("", sheet.processCommand("a2"));
+    }
+}
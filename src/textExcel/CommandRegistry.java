@@ -0,0 +1,80 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.ArrayList;
+
+/**
+ * A table of named commands, looked up by the first token of a command line
+ *
+ * Commands are bucketed by their first letter ahead of time, so dispatching a command only compares
+ * the first token against the few names that share its first letter.
+ * @param <T> the type of object the commands act on
+ */
+public class CommandRegistry<T> {
+    /**
+     * A command that can be run against a target
+     * @param <T> the type of object the command acts on
+     */
+    public interface Command<T> {
+        /**
+         * @param target the object to run the command against
+         * @param line the tokenized command, the command name is token 0
+         * @return the text to display
+         */
+        String execute(T target, CommandLine line);
+    }
+    
+    private static class Entry<T> {
+        private final String name;
+        private final Command<T> command;
+        
+        private Entry(String name, Command<T> command) {
+            this.name = name;
+            this.command = command;
+        }
+    }
+    
+    private final ArrayList<ArrayList<Entry<T>>> buckets = new ArrayList<>();
+    private Command<T> fallback;
+    
+    public CommandRegistry() {
+        for (int i = 0; i < 26; i++) buckets.add(new ArrayList<>());
+    }
+    
+    /**
+     * @param name the name of the command, must start with a letter
+     * @param command the command to run when the first token matches {@code name}, ignoring case
+     * @return this registry
+     */
+    public CommandRegistry<T> register(String name, Command<T> command) {
+        buckets.get(Character.toLowerCase(name.charAt(0)) - 'a').add(new Entry<>(name, command));
+        return this;
+    }
+    
+    /**
+     * @param command the command to run when no named command matches
+     * @return this registry
+     */
+    public CommandRegistry<T> setFallback(Command<T> command) {
+        this.fallback = command;
+        return this;
+    }
+    
+    /**
+     * @param line the tokenized command, must have at least one token
+     * @return the command named by the first token, or the fallback command if there is none
+     */
+    public Command<T> lookup(CommandLine line) {
+        char first = line.firstChar(0);
+        if (first >= 'a' && first <= 'z') {
+            ArrayList<Entry<T>> bucket = buckets.get(first - 'a');
+            for (int i = 0; i < bucket.size(); i++) {
+                if (line.matches(0, bucket.get(i).name)) return bucket.get(i).command;
+            }
+        }
+        return fallback;
+    }
+
+}
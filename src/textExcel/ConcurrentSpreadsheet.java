@@ -0,0 +1,154 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * A spreadsheet that can be shared between threads
+ *
+ * Commands that change anything run one at a time on the wrapped spreadsheet, under a lock. After each one
+ * the changed cells are published as a new {@link SpreadsheetSnapshot}. Cell queries, {@link #getCell(Location)}
+ * and {@link #getGridText()} only read the latest snapshot, so they never wait for a writer and never
+ * see a half finished command.
+ */
+public class ConcurrentSpreadsheet implements CellGrid {
+    private final Spreadsheet sheet;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile SpreadsheetSnapshot snapshot;
+    
+    // cells changed by the running command, only touched while holding the write lock
+    private final LinkedHashMap<Long, Cell> changes = new LinkedHashMap<>();
+    // queries answered from a snapshot still belong in the history, they are added by the next writer
+    private final ConcurrentLinkedQueue<String> unrecordedQueries = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Constructor that takes over a spreadsheet, the spreadsheet must not be used directly afterwards
+     * @param sheet the spreadsheet to share
+     */
+    public ConcurrentSpreadsheet(Spreadsheet sheet) {
+        this.sheet = sheet;
+        this.snapshot = new SpreadsheetSnapshot(sheet.getRows(), sheet.getCols());
+        
+        sheet.setCellListener((row, col, cell) -> changes.put(SpreadsheetLocation.pack(row, col), cell));
+        sheet.forEachCell((row, col, cell) -> changes.put(SpreadsheetLocation.pack(row, col), cell));
+        publish();
+    }
+    
+    public ConcurrentSpreadsheet() {
+        this(new Spreadsheet());
+    }
+    
+    @Override
+    public String processCommand(String command) {
+        SpreadsheetSnapshot current = snapshot;
+        if (isQuery(command, current)) {
+            unrecordedQueries.add(command);
+            return current.processCommand(command);
+        }
+        
+        writeLock.lock();
+        try {
+            recordQueries();
+            return publish(sheet.processCommand(command));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Runs a sequence of commands in batch mode, other writers wait until the whole batch is done
+     * @see Spreadsheet#processBatch(Iterable, Consumer)
+     * @param commands the commands to run, in order
+     * @param output receives everything the commands display
+     * @return the view of the spreadsheet after the last command
+     */
+    public String processBatch(Iterable<String> commands, Consumer<String> output) {
+        writeLock.lock();
+        try {
+            recordQueries();
+            return publish(sheet.processBatch(commands, output));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * @return the latest published state of the spreadsheet, read it for several cells that have to agree
+     */
+    public SpreadsheetSnapshot snapshot() {
+        return snapshot;
+    }
+    
+    @Override
+    public int getRows() {
+        return sheet.getRows();
+    }
+    
+    @Override
+    public int getCols() {
+        return sheet.getCols();
+    }
+    
+    @Override
+    public Cell getCell(Location loc) {
+        return snapshot.getCell(loc);
+    }
+    
+    @Override
+    public Cell getCell(int row, int col) {
+        return snapshot.getCell(row, col);
+    }
+    
+    @Override
+    public String getGridText() {
+        return snapshot.getGridText();
+    }
+    
+    /**
+     * Helper method to check if a command only reads a single cell
+     * @param command the command
+     * @param current the snapshot the command would be answered from
+     * @return true if {@code command} is a cell name inside the spreadsheet
+     */
+    private static boolean isQuery(String command, SpreadsheetSnapshot current) {
+        String name = command.trim();
+        long key = SpreadsheetLocation.parse(name, 0, name.length());
+        return key >= 0 && SpreadsheetLocation.unpackRow(key) < current.getRows()
+                && SpreadsheetLocation.unpackCol(key) < current.getCols();
+    }
+    
+    /**
+     * Helper method to move queries answered from snapshots into the history, must hold the write lock
+     */
+    private void recordQueries() {
+        for (String query = unrecordedQueries.poll(); query != null; query = unrecordedQueries.poll()) {
+            try {
+                sheet.recordHistory(query);
+            } catch (IOException e) {
+                // the query is still in the history, and the writer's own command reports the broken file
+            }
+        }
+    }
+    
+    /**
+     * Helper method to publish the cells changed by the last command as a new snapshot, must hold the write lock
+     * @param result the output of the command
+     * @return {@code result}
+     */
+    private String publish(String result) {
+        publish();
+        return result;
+    }
+    
+    private void publish() {
+        if (changes.isEmpty()) return;
+        snapshot = snapshot.with(changes);
+        changes.clear();
+    }
+}
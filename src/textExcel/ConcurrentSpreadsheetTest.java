@@ -0,0 +1,110 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class ConcurrentSpreadsheetTest {
+    @Test
+    public void testReadersSeeWholeCommands() throws InterruptedException {
+        ConcurrentSpreadsheet sheet = new ConcurrentSpreadsheet();
+        sheet.processCommand("A1 = 0");
+        sheet.processCommand("A2 = ( A1 * 2 )");
+        AtomicReference<String> failure = new AtomicReference<>();
+        
+        ArrayList<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread(() -> {
+                long version = -1;
+                for (int read = 0; read < 20000 && failure.get() == null; read++) {
+                    SpreadsheetSnapshot snapshot = sheet.snapshot();
+                    double a1 = ((RealCell) snapshot.getCell(0, 0)).getDoubleValue();
+                    double a2 = ((RealCell) snapshot.getCell(1, 0)).getDoubleValue();
+                    // a formula in a snapshot always has the result of the value in the same snapshot
+                    if (a2 != a1 * 2) failure.set("A1 " + a1 + " with A2 " + a2);
+                    if (snapshot.getVersion() < version) failure.set("snapshots went back in time");
+                    version = snapshot.getVersion();
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+        
+        for (int i = 1; i <= 2000; i++) sheet.processCommand("A1 = " + i);
+        for (Thread reader : readers) reader.join();
+        assertNull(failure.get(), failure.get());
+        assertEquals("4000.0", sheet.getCell(1, 0).abbreviatedCellText().trim());
+    }
+    
+    @Test
+    public void testConcurrentWritersAreSerialized() throws InterruptedException {
+        ConcurrentSpreadsheet sheet = new ConcurrentSpreadsheet();
+        ArrayList<Thread> writers = new ArrayList<>();
+        for (int col = 0; col < 4; col++) {
+            String column = SpreadsheetLocation.columnName(col);
+            Thread writer = new Thread(() -> {
+                for (int row = 1; row <= 20; row++) sheet.processCommand(column + row + " = " + row);
+            });
+            writer.start();
+            writers.add(writer);
+        }
+        for (Thread writer : writers) writer.join();
+        
+        sheet.processCommand("E1 = ( SUM A1-D20 )");
+        assertEquals(840, ((RealCell) sheet.getCell(0, 4)).getDoubleValue(), 0);
+        assertEquals("7", sheet.processCommand("C7"));
+    }
+    
+    @Test
+    public void testBatchIsPublishedAtOnce() {
+        ConcurrentSpreadsheet sheet = new ConcurrentSpreadsheet();
+        SpreadsheetSnapshot before = sheet.snapshot();
+        sheet.processBatch(Arrays.asList("A1 = 1", "B1 = 2", "C1 = ( A1 + B1 )"), output -> { });
+        assertTrue(before.getCell(0, 2) instanceof EmptyCell);
+        assertEquals(3, ((RealCell) sheet.getCell(0, 2)).getDoubleValue(), 0);
+        assertTrue(sheet.snapshot().getVersion() > before.getVersion());
+    }
+    
+    @Test
+    public void testVersionsShareUnchangedCells() {
+        SpreadsheetSnapshot first = new SpreadsheetSnapshot(200, 20);
+        HashMap<Long, Cell> changes = new HashMap<>();
+        Cell far = new ValueCell("9");
+        changes.put(SpreadsheetLocation.pack(0, 0), new ValueCell("1"));
+        changes.put(SpreadsheetLocation.pack(150, 10), far);
+        SpreadsheetSnapshot second = first.with(changes);
+        
+        changes.clear();
+        changes.put(SpreadsheetLocation.pack(0, 0), EmptyCell.INSTANCE);
+        changes.put(SpreadsheetLocation.pack(0, 1), new ValueCell("2"));
+        SpreadsheetSnapshot third = second.with(changes);
+        
+        // older versions are left as they were
+        assertTrue(first.getCell(150, 10) instanceof EmptyCell);
+        assertEquals("1", second.getCell(0, 0).fullCellText());
+        assertTrue(second.getCell(0, 1) instanceof EmptyCell);
+        assertTrue(third.getCell(0, 0) instanceof EmptyCell);
+        assertEquals("2", third.getCell(0, 1).fullCellText());
+        // and a cell nothing changed is the same cell in both
+        assertSame(far, second.getCell(150, 10));
+        assertSame(far, third.getCell(150, 10));
+    }
+    
+    @Test
+    public void testQueriesAreRecordedInHistory() {
+        ConcurrentSpreadsheet sheet = new ConcurrentSpreadsheet();
+        sheet.processCommand("history start 5");
+        sheet.processCommand("A1 = 1");
+        assertEquals("1", sheet.processCommand("A1"));
+        sheet.processCommand("B1 = 2");
+        assertEquals("B1 = 2\nA1\nA1 = 1", sheet.processCommand("history display"));
+    }
+}
@@ -0,0 +1,93 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CsvExportTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    @Test
+    public void testWriterQuoting() throws IOException {
+        StringWriter out = new StringWriter();
+        CsvWriter csv = new CsvWriter(out);
+        for (String field : new String[] {"plain", "a,b", "say \"hi\"", "two\nlines", ""}) csv.writeField(field);
+        csv.endRecord();
+        csv.writeField("next");
+        csv.endRecord();
+        assertEquals("plain,\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\",\r\nnext\r\n", out.toString());
+        
+        // what is written reads back as the same fields
+        List<List<String>> records = CsvTest.read(out.toString());
+        assertEquals(Arrays.asList("plain", "a,b", "say \"hi\"", "two\nlines", ""), records.get(0));
+        assertEquals(Arrays.asList("next"), records.get(1));
+    }
+    
+    @Test
+    public void testExportEvaluatedValues() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1.50");
+        sheet.processCommand("B1 = 25%");
+        sheet.processCommand("C1 = ( A1 * 4 )");
+        sheet.processCommand("A2 = \"x, \"y\"\"");
+        sheet.processCommand("C2 = ( 1 / 0 )");
+        sheet.processCommand("A3 = 0.000001");
+        sheet.processCommand("B3 = 123456789012");
+        
+        StringWriter out = new StringWriter();
+        sheet.export(out, sheet.getUsedRange());
+        assertEquals("1.5,0.25,6\r\n\"x, \"\"y\"\"\",,#ERROR\r\n0.000001,123456789012,\r\n", out.toString());
+    }
+    
+    @Test
+    public void testExportLoadRoundTrip() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 2");
+        sheet.processCommand("B2 = \"a,b\"");
+        sheet.processCommand("C3 = ( A1 + 0.5 )");
+        sheet.processCommand("D1 = 30%");
+        
+        StringWriter out = new StringWriter();
+        sheet.export(out, sheet.getUsedRange());
+        Spreadsheet loaded = new Spreadsheet();
+        loaded.load(new StringReader(out.toString()), new SpreadsheetLocation("A1"));
+        
+        assertEquals("2", loaded.processCommand("A1"));
+        assertEquals("\"a,b\"", loaded.processCommand("B2"));
+        // formulas come back as their values
+        assertEquals("2.5", loaded.processCommand("C3"));
+        assertEquals(0.3, ((RealCell) loaded.getCell("D1")).getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testExportCommand() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("B1 = 2");
+        sheet.processCommand("A2 = 3");
+        File file = new File(folder.getRoot(), "out.csv");
+        
+        assertEquals("", sheet.processCommand("export " + file + " B1-B2"));
+        assertEquals("2\r\n\r\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        assertEquals("", sheet.processCommand("export " + file));
+        assertEquals("1,2\r\n3,\r\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        
+        assertTrue(sheet.processCommand("export " + file + " A1-Z1").startsWith("ERROR"));
+        assertTrue(sheet.processCommand("export " + new File(folder.getRoot(), "missing/out.csv")).startsWith("ERROR"));
+    }
+}
@@ -0,0 +1,105 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Reads CSV records one at a time, so a file never has to fit in memory
+ *
+ * Fields are separated by commas and records by line breaks. A field in double quotes may contain
+ * commas, line breaks and doubled quotes standing for one quote, as described in RFC 4180.
+ */
+public class CsvReader implements Closeable {
+    private final Reader in;
+    private final char[] buffer = new char[1 << 16];
+    private int position;
+    private int limit;
+    private final StringBuilder field = new StringBuilder();
+
+    public CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next record
+     * @param fields the list to replace with the fields of the record
+     * @return false if there are no records left, {@code fields} is left empty
+     * @throws IOException if reading fails
+     */
+    public boolean readRecord(List<String> fields) throws IOException {
+        fields.clear();
+        int c = read();
+        if (c < 0) return false;
+
+        boolean quoted = false;
+        field.setLength(0);
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    // an unterminated quote runs to the end of the file
+                    fields.add(field.toString());
+                    return true;
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+                field.append((char) c);
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c < 0 || c == '\n' || c == '\r') {
+                fields.add(field.toString());
+                // a \r\n line break is one break
+                if (c == '\r' && peek() == '\n') read();
+                return true;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Helper method to read the next character
+     * @return the character, or -1 at the end of the input
+     * @throws IOException if reading fails
+     */
+    private int read() throws IOException {
+        int c = peek();
+        if (c >= 0) position++;
+        return c;
+    }
+
+    /**
+     * Helper method to look at the next character without consuming it
+     * @return the character, or -1 at the end of the input
+     * @throws IOException if reading fails
+     */
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit < 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+}
@@ -0,0 +1,88 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CsvTest {
+    /**
+     * Helper method to read every record of some CSV text
+     * @param csv the text to read
+     * @return the records, each a list of fields
+     */
+    static List<List<String>> read(String csv) throws IOException {
+        ArrayList<List<String>> records = new ArrayList<>();
+        CsvReader reader = new CsvReader(new StringReader(csv));
+        ArrayList<String> fields = new ArrayList<>();
+        while (reader.readRecord(fields)) records.add(new ArrayList<>(fields));
+        return records;
+    }
+    
+    @Test
+    public void testPlainRecords() throws IOException {
+        List<List<String>> records = read("a,b,c\n1,,3\r\nlast");
+        assertEquals(3, records.size());
+        assertEquals(Arrays.asList("a", "b", "c"), records.get(0));
+        assertEquals(Arrays.asList("1", "", "3"), records.get(1));
+        assertEquals(Arrays.asList("last"), records.get(2));
+        assertTrue(read("").isEmpty());
+    }
+    
+    @Test
+    public void testQuotedFields() throws IOException {
+        List<List<String>> records = read("\"a,b\",\"say \"\"hi\"\"\",\"two\nlines\"\n\"\",x\n");
+        assertEquals(2, records.size());
+        assertEquals(Arrays.asList("a,b", "say \"hi\"", "two\nlines"), records.get(0));
+        assertEquals(Arrays.asList("", "x"), records.get(1));
+    }
+    
+    @Test
+    public void testLongFieldsCrossTheBuffer() throws IOException {
+        StringBuilder csv = new StringBuilder();
+        char[] longField = new char[100000];
+        Arrays.fill(longField, 'x');
+        for (int i = 0; i < 3; i++) csv.append('"').append(longField).append("\",").append(i).append('\n');
+        List<List<String>> records = read(csv.toString());
+        assertEquals(3, records.size());
+        assertEquals(100000, records.get(2).get(0).length());
+        assertEquals("2", records.get(2).get(1));
+    }
+    
+    @Test
+    public void testLoadIntoSpreadsheet() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("C3 = \"overwritten\"");
+        long skipped = sheet.load(new StringReader("1.5,50%,hello\n-,\"a,b\",\n\"two\nlines\",7,8,9,10,11,12,13,14,15,16,17,18\n"),
+                new SpreadsheetLocation("B2"));
+        
+        assertEquals(2, skipped);
+        assertEquals("1.5", sheet.processCommand("B2"));
+        assertEquals("0.5", sheet.processCommand("C2"));
+        assertTrue(sheet.getCell("C2") instanceof PercentCell);
+        assertEquals("\"hello\"", sheet.processCommand("D2"));
+        // something that only looks like a number is text
+        assertEquals("\"-\"", sheet.processCommand("B3"));
+        assertEquals("\"a,b\"", sheet.processCommand("C3"));
+        assertEquals("", sheet.processCommand("D3"));
+        // a cell is one line, so a line break in a field becomes a space
+        assertEquals("\"two lines\"", sheet.processCommand("B4"));
+        assertEquals("16", sheet.processCommand("L4"));
+    }
+    
+    @Test
+    public void testLoadCommand() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        assertTrue(sheet.processCommand("load no-such-file.csv A1").startsWith("ERROR: no such file"));
+        assertTrue(sheet.processCommand("load x.csv").startsWith("ERROR"));
+        assertTrue(sheet.processCommand("load x.csv Z1").startsWith("ERROR"));
+    }
+}
@@ -0,0 +1,72 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes CSV records a field at a time, the counterpart of {@link CsvReader}
+ *
+ * Fields are only quoted when they contain a comma, a quote or a line break, and records end with \r\n
+ * as described in RFC 4180. Nothing is buffered here, wrap the writer in a BufferedWriter.
+ */
+public class CsvWriter implements Closeable {
+    private final Writer out;
+    private boolean firstField = true;
+
+    public CsvWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes one field of the current record
+     * @param field the text of the field
+     * @throws IOException if writing fails
+     */
+    public void writeField(String field) throws IOException {
+        if (!firstField) out.write(',');
+        firstField = false;
+
+        if (!needsQuotes(field)) {
+            out.write(field);
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '"') out.write('"');
+            out.write(c);
+        }
+        out.write('"');
+    }
+
+    /**
+     * Ends the current record, the next field starts a new one
+     * @throws IOException if writing fails
+     */
+    public void endRecord() throws IOException {
+        out.write("\r\n");
+        firstField = true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Helper method to check whether a field has to be quoted
+     * @param field the text of the field
+     * @return true if {@code field} contains a comma, a quote or a line break
+     */
+    private static boolean needsQuotes(String field) {
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,42 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.Arrays;
+
+/**
+ * Cell storage backed by a plain 2D array, the fastest choice for small spreadsheets
+ */
+public class DenseCellStorage implements CellStorage {
+    private final Cell[][] cells;
+    
+    public DenseCellStorage(int rows, int columns) {
+        cells = new Cell[rows][columns];
+    }
+    
+    @Override
+    public Cell get(int row, int col) {
+        Cell cell = cells[row][col];
+        return cell == null ? EmptyCell.INSTANCE : cell;
+    }
+    
+    @Override
+    public void set(int row, int col, Cell cell) {
+        cells[row][col] = cell instanceof EmptyCell ? null : cell;
+    }
+    
+    @Override
+    public void clear() {
+        for (Cell[] row : cells) Arrays.fill(row, null);
+    }
+    
+    @Override
+    public void forEach(CellVisitor visitor) {
+        for (int row = 0; row < cells.length; row++) {
+            for (int col = 0; col < cells[row].length; col++) {
+                if (cells[row][col] != null) visitor.visit(row, col, cells[row][col]);
+            }
+        }
+    }
+}
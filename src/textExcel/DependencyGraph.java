@@ -0,0 +1,218 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which formula cells reference which other cells
+ *
+ * Cells are identified by their packed location key, see {@link SpreadsheetLocation#pack(int, int)}.
+ * Each formula cell knows its precedents (the cells it reads), and each referenced cell knows
+ * its dependents (the formula cells that read it), so a change to one cell only has to
+ * recalculate the formulas that can actually see it.
+ *
+ * Single cell references are stored as individual edges. Ranges are stored whole and bucketed by
+ * the tiles of the sheet they overlap, so a SUM over a million cells doesn't need a million edges.
+ */
+public class DependencyGraph {
+    private static final int TILE_SHIFT = 6;
+    private static final long[] NO_PRECEDENTS = new long[0];
+    private static final CellRange[] NO_RANGES = new CellRange[0];
+    
+    private final HashMap<Long, long[]> precedents = new HashMap<>();
+    private final HashMap<Long, CellRange[]> rangePrecedents = new HashMap<>();
+    private final HashMap<Long, HashSet<Long>> dependents = new HashMap<>();
+    // formula keys reading ranges that overlap each tile, keyed by packed tile row and column
+    private final HashMap<Long, HashMap<Long, ArrayList<CellRange>>> rangeDependents = new HashMap<>();
+    
+    /**
+     * Replaces the precedents of a cell, removing any edges it had before
+     * @param cell the key of the formula cell
+     * @param references the keys of every single cell the formula reads, without duplicates
+     * @param ranges every range the formula reads
+     */
+    public void setPrecedents(long cell, long[] references, CellRange[] ranges) {
+        removePrecedents(cell);
+        
+        if (references.length > 0) {
+            precedents.put(cell, references);
+            for (long reference : references) {
+                dependents.computeIfAbsent(reference, k -> new HashSet<>()).add(cell);
+            }
+        }
+        
+        if (ranges.length > 0) {
+            rangePrecedents.put(cell, ranges);
+            for (CellRange range : ranges) {
+                for (int tileRow = range.getTop() >> TILE_SHIFT; tileRow <= range.getBottom() >> TILE_SHIFT; tileRow++) {
+                    for (int tileCol = range.getLeft() >> TILE_SHIFT; tileCol <= range.getRight() >> TILE_SHIFT; tileCol++) {
+                        rangeDependents.computeIfAbsent(SpreadsheetLocation.pack(tileRow, tileCol), k -> new HashMap<>())
+                                .computeIfAbsent(cell, k -> new ArrayList<>()).add(range);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Removes every edge from a cell to its precedents, used when a formula is overwritten or cleared
+     * @param cell the key of the cell
+     */
+    public void removePrecedents(long cell) {
+        long[] old = precedents.remove(cell);
+        if (old != null) {
+            for (long reference : old) {
+                HashSet<Long> referenceDependents = dependents.get(reference);
+                referenceDependents.remove(cell);
+                if (referenceDependents.isEmpty()) dependents.remove(reference);
+            }
+        }
+        
+        CellRange[] oldRanges = rangePrecedents.remove(cell);
+        if (oldRanges != null) {
+            for (CellRange range : oldRanges) {
+                for (int tileRow = range.getTop() >> TILE_SHIFT; tileRow <= range.getBottom() >> TILE_SHIFT; tileRow++) {
+                    for (int tileCol = range.getLeft() >> TILE_SHIFT; tileCol <= range.getRight() >> TILE_SHIFT; tileCol++) {
+                        long tile = SpreadsheetLocation.pack(tileRow, tileCol);
+                        HashMap<Long, ArrayList<CellRange>> tileDependents = rangeDependents.get(tile);
+                        if (tileDependents == null) continue;  // already removed through another range of this cell
+                        
+                        tileDependents.remove(cell);
+                        if (tileDependents.isEmpty()) rangeDependents.remove(tile);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Removes every edge in the graph
+     */
+    public void clear() {
+        precedents.clear();
+        rangePrecedents.clear();
+        dependents.clear();
+        rangeDependents.clear();
+    }
+    
+    /**
+     * @return true if no cell reads anything
+     */
+    public boolean isEmpty() {
+        return precedents.isEmpty() && rangePrecedents.isEmpty();
+    }
+    
+    /**
+     * @param cell the key of the cell
+     * @return the keys of the single cells read by {@code cell}
+     */
+    public long[] getPrecedents(long cell) {
+        return precedents.getOrDefault(cell, NO_PRECEDENTS);
+    }
+    
+    /**
+     * @param cell the key of the cell
+     * @return the ranges read by {@code cell}
+     */
+    public CellRange[] getRangePrecedents(long cell) {
+        return rangePrecedents.getOrDefault(cell, NO_RANGES);
+    }
+    
+    /**
+     * @param cell the key of the cell
+     * @return the keys of the formula cells that directly read {@code cell}, through a reference or a range
+     */
+    public Set<Long> getDependents(long cell) {
+        HashSet<Long> cellDependents = dependents.get(cell);
+        int row = SpreadsheetLocation.unpackRow(cell);
+        int col = SpreadsheetLocation.unpackCol(cell);
+        
+        HashMap<Long, ArrayList<CellRange>> tileDependents = rangeDependents.get(SpreadsheetLocation.pack(row >> TILE_SHIFT, col >> TILE_SHIFT));
+        if (tileDependents == null) return cellDependents == null ? Collections.emptySet() : cellDependents;
+        
+        // only now is there something to merge, so only now is a new set needed
+        HashSet<Long> all = cellDependents == null ? new HashSet<>() : new HashSet<>(cellDependents);
+        for (Map.Entry<Long, ArrayList<CellRange>> entry : tileDependents.entrySet()) {
+            for (CellRange range : entry.getValue()) {
+                if (range.contains(row, col)) {
+                    all.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        return all;
+    }
+    
+    /**
+     * Collects a set of changed cells along with every cell that transitively depends on them
+     * @param changed the keys of the cells that changed
+     * @return the keys of every cell that has to be recalculated
+     */
+    public LinkedHashSet<Long> getAffectedCells(Collection<Long> changed) {
+        LinkedHashSet<Long> affected = new LinkedHashSet<>(changed);
+        ArrayDeque<Long> queue = new ArrayDeque<>(changed);
+        
+        while (!queue.isEmpty()) {
+            for (long dependent : getDependents(queue.poll())) {
+                if (affected.add(dependent)) queue.add(dependent);
+            }
+        }
+        return affected;
+    }
+    
+    /**
+     * Groups cells into levels so that every cell comes in a later level than all of its precedents
+     *
+     * Cells in the same level never read each other, so a whole level can be evaluated at once.
+     * Cells that are part of a reference cycle, or that depend on one, can never be ordered
+     * and are left out of the result.
+     * @param cells the keys of the cells to order, typically from {@link #getAffectedCells(Collection)}
+     * @return the keys of the cells in {@code cells}, level by level in topological order
+     */
+    public ArrayList<long[]> sortIntoLevels(Set<Long> cells) {
+        // count incoming edges from the dependents side, so ranges never have to be walked cell by cell
+        HashMap<Long, Integer> inDegree = new HashMap<>();
+        for (long cell : cells) {
+            for (long dependent : getDependents(cell)) {
+                if (cells.contains(dependent)) inDegree.merge(dependent, 1, Integer::sum);
+            }
+        }
+        
+        ArrayList<Long> ready = new ArrayList<>();
+        for (long cell : cells) {
+            if (!inDegree.containsKey(cell)) ready.add(cell);
+        }
+        
+        ArrayList<long[]> levels = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            long[] level = new long[ready.size()];
+            for (int i = 0; i < level.length; i++) level[i] = ready.get(i);
+            levels.add(level);
+            
+            // a cell is ready for the next level once every precedent has a level
+            ready.clear();
+            for (long cell : level) {
+                for (long dependent : getDependents(cell)) {
+                    Integer degree = inDegree.get(dependent);
+                    if (degree == null) continue;  // not part of this recalculation
+                    
+                    if (degree == 1) {
+                        inDegree.remove(dependent);
+                        ready.add(dependent);
+                    } else inDegree.put(dependent, degree - 1);
+                }
+            }
+        }
+        return levels;
+    }
+}
@@ -0,0 +1,113 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DependencyGraphTest {
+    private static final long A1 = SpreadsheetLocation.pack(0, 0);
+    private static final long B1 = SpreadsheetLocation.pack(0, 1);
+    private static final long C1 = SpreadsheetLocation.pack(0, 2);
+    private static final long D1 = SpreadsheetLocation.pack(0, 3);
+    private static final CellRange[] NO_RANGES = new CellRange[0];
+    
+    private DependencyGraph graph;
+    
+    @Before
+    public void createGraph() {
+        graph = new DependencyGraph();
+    }
+    
+    @Test
+    public void testDependents() {
+        graph.setPrecedents(B1, new long[] {A1}, NO_RANGES);
+        graph.setPrecedents(C1, new long[] {A1, B1}, NO_RANGES);
+        assertEquals(2, graph.getDependents(A1).size());
+        assertTrue(graph.getDependents(B1).contains(C1));
+        assertTrue(graph.getDependents(C1).isEmpty());
+        
+        // replacing the precedents drops the old edges
+        graph.setPrecedents(C1, new long[] {D1}, NO_RANGES);
+        assertFalse(graph.getDependents(A1).contains(C1));
+        assertFalse(graph.getDependents(B1).contains(C1));
+        assertTrue(graph.getDependents(D1).contains(C1));
+        
+        graph.removePrecedents(C1);
+        assertTrue(graph.getDependents(D1).isEmpty());
+    }
+    
+    @Test
+    public void testRangeDependents() {
+        // spans several tiles, without an edge for every cell
+        graph.setPrecedents(A1, new long[0], new CellRange[] {new CellRange(1, 0, 200, 100)});
+        assertTrue(graph.getDependents(SpreadsheetLocation.pack(1, 0)).contains(A1));
+        assertTrue(graph.getDependents(SpreadsheetLocation.pack(150, 70)).contains(A1));
+        assertTrue(graph.getDependents(SpreadsheetLocation.pack(200, 100)).contains(A1));
+        assertFalse(graph.getDependents(SpreadsheetLocation.pack(201, 100)).contains(A1));
+        assertFalse(graph.getDependents(SpreadsheetLocation.pack(0, 0)).contains(A1));
+    }
+    
+    @Test
+    public void testAffectedCellsAndLevels() {
+        // A1 <- B1 <- C1, and D1 reads both A1 and C1
+        graph.setPrecedents(B1, new long[] {A1}, NO_RANGES);
+        graph.setPrecedents(C1, new long[] {B1}, NO_RANGES);
+        graph.setPrecedents(D1, new long[] {A1, C1}, NO_RANGES);
+        
+        LinkedHashSet<Long> affected = graph.getAffectedCells(Arrays.asList(A1));
+        assertEquals(4, affected.size());
+        
+        ArrayList<long[]> levels = graph.sortIntoLevels(affected);
+        assertEquals(4, levels.size());
+        assertArrayEquals(new long[] {A1}, levels.get(0));
+        assertArrayEquals(new long[] {B1}, levels.get(1));
+        assertArrayEquals(new long[] {C1}, levels.get(2));
+        assertArrayEquals(new long[] {D1}, levels.get(3));
+        
+        // only what can see the change is affected
+        assertEquals(2, graph.getAffectedCells(Arrays.asList(C1)).size());
+    }
+    
+    @Test
+    public void testCycleIsLeftOutOfLevels() {
+        graph.setPrecedents(B1, new long[] {C1}, NO_RANGES);
+        graph.setPrecedents(C1, new long[] {B1}, NO_RANGES);
+        graph.setPrecedents(D1, new long[] {C1}, NO_RANGES);
+        graph.setPrecedents(A1, new long[0], NO_RANGES);
+        
+        LinkedHashSet<Long> cells = new LinkedHashSet<>(Arrays.asList(A1, B1, C1, D1));
+        ArrayList<long[]> levels = graph.sortIntoLevels(cells);
+        assertEquals(1, levels.size());
+        assertArrayEquals(new long[] {A1}, levels.get(0));
+    }
+    
+    @Test
+    public void testSpreadsheetRecalculatesDependents() {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("B1 = ( A1 + 1 )");
+        sheet.processCommand("C1 = ( B1 * 10 )");
+        sheet.processCommand("D1 = ( SUM A1-C1 )");
+        assertEquals("23.0", sheet.getCell("D1").abbreviatedCellText().trim());
+        
+        sheet.processCommand("A1 = 2");
+        assertEquals("3.0", sheet.getCell("B1").abbreviatedCellText().trim());
+        assertEquals("30.0", sheet.getCell("C1").abbreviatedCellText().trim());
+        assertEquals("35.0", sheet.getCell("D1").abbreviatedCellText().trim());
+        
+        // clearing a precedent is an error all the way down, and setting it again recovers
+        sheet.processCommand("clear A1");
+        assertEquals("#ERROR", sheet.getCell("C1").abbreviatedCellText().trim());
+        assertEquals("#ERROR", sheet.getCell("D1").abbreviatedCellText().trim());
+        sheet.processCommand("A1 = 0");
+        assertEquals("11.0", sheet.getCell("D1").abbreviatedCellText().trim());
+    }
+}
@@ -4,6 +4,11 @@
 package textExcel;
 
 public class EmptyCell extends BaseCell {
+    /**
+     * Empty cells hold no state, so every unpopulated slot can share this one
+     */
+    public static final EmptyCell INSTANCE = new EmptyCell();
+    
     public EmptyCell() {
         super("");
     }
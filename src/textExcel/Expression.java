@@ -0,0 +1,436 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A compiled formula expression
+ *
+ * Formulas are parsed once into a tree of nodes when a FormulaCell is created,
+ * so evaluating a formula never has to re-tokenize or re-parse its equation.
+ * Constants are stored as doubles and cell references as row and column indices.
+ * A reference can name another sheet of the same workbook, like Sheet2!B3, which is
+ * looked up through the workbook whenever the formula is evaluated.
+ */
+public abstract class Expression {
+    /**
+     * Evaluates this expression
+     * @param spreadsheet the spreadsheet cell references are resolved against
+     * @return the value of this expression
+     */
+    public abstract double evaluate(Spreadsheet spreadsheet);
+    
+    /**
+     * Checks whether or not this expression can be evaluated
+     * An expression is invalid if it reads a cell that isn't a RealCell, reads a formula with an error,
+     * or divides by zero. Cycles are caught by the dependency graph before this is ever called.
+     * @param spreadsheet the spreadsheet cell references are resolved against
+     * @return true if evaluating this expression gives a meaningful value
+     */
+    public boolean isValid(Spreadsheet spreadsheet) {
+        return true;
+    }
+    
+    /**
+     * Helper method to check whether or not a cell can be used as an operand
+     * @param cell the cell to check
+     * @return true if {@code cell} holds a number that isn't an error
+     */
+    static boolean isValidOperand(Cell cell) {
+        return cell instanceof RealCell && !(cell instanceof FormulaCell && ((FormulaCell) cell).hasError());
+    }
+    
+    /**
+     * Helper method to find the sheet a reference reads
+     * @param spreadsheet the spreadsheet of the formula
+     * @param sheet the name of another sheet, or null for the spreadsheet of the formula
+     * @return the sheet, or null if the workbook has no sheet of that name
+     */
+    static Spreadsheet resolve(Spreadsheet spreadsheet, String sheet) {
+        if (sheet == null) return spreadsheet;
+        Workbook workbook = spreadsheet.getWorkbook();
+        return workbook == null ? null : workbook.getSheet(sheet);
+    }
+    
+    /**
+     * Adds every cell and range this expression reads
+     * @param references the set to add the packed keys of single cell references to
+     * @param ranges the list to add ranges to
+     * @param sheetRanges the list to add cells and ranges on other sheets to
+     */
+    public void addReferences(Set<Long> references, List<CellRange> ranges, List<SheetRange> sheetRanges) {
+        // constants don't reference anything
+    }
+    
+    /**
+     * Builds anything evaluating this expression would otherwise build on first use
+     * Call on one thread before evaluating on several, evaluating then only reads shared state.
+     * @param spreadsheet the spreadsheet cell references are resolved against
+     */
+    public void prepare(Spreadsheet spreadsheet) {
+        // only range functions build anything
+    }
+    
+    /**
+     * Compiles an equation into an expression tree
+     * Assumes the equation has already been checked with {@link Spreadsheet#isValidFormulaAssignment(String)}
+     * @param equation the space separated terms of the formula, without the surrounding parentheses
+     * @param sheet the name of the sheet the formula is on, references naming it are plain references,
+     *              or null if it isn't part of a workbook
+     * @return the root node of the compiled expression
+     */
+    public static Expression compile(String[] equation, String sheet) {
+        RangeFunction.Aggregate aggregate = RangeFunction.Aggregate.named(equation[0]);
+        if (aggregate != null) {
+            String rangeSheet = sheetOf(equation[1], sheet);
+            String[] range = equation[1].substring(equation[1].indexOf('!') + 1).split("-", 2);
+            return new RangeFunction(aggregate, rangeSheet,
+                    new SpreadsheetLocation(range[0]), new SpreadsheetLocation(range[1]));
+        }
+        
+        // lower precedence operators are folded last, so build the multiplicative terms first
+        Expression sum = null;
+        char sumOperator = '+';
+        Expression product = compileOperand(equation[0], sheet);
+        
+        for (int i = 1; i < equation.length; i += 2) {
+            char operator = equation[i].charAt(0);
+            Expression operand = compileOperand(equation[i + 1], sheet);
+            
+            if (operator == '*' || operator == '/') {
+                product = new BinaryOperation(operator, product, operand);
+            } else {
+                sum = sum == null ? product : new BinaryOperation(sumOperator, sum, product);
+                sumOperator = operator;
+                product = operand;
+            }
+        }
+        
+        return sum == null ? product : new BinaryOperation(sumOperator, sum, product);
+    }
+    
+    /**
+     * Helper method to compile a single operand, either a cell reference or a constant
+     * @param term the operand to compile
+     * @param sheet the name of the sheet the formula is on, or null
+     * @return the compiled operand
+     */
+    private static Expression compileOperand(String term, String sheet) {
+        if (!Character.isLetter(term.charAt(0))) return new Constant(Double.parseDouble(term));
+        
+        Location location = new SpreadsheetLocation(term.substring(term.indexOf('!') + 1));
+        String referenceSheet = sheetOf(term, sheet);
+        return referenceSheet == null ? new CellReference(location) : new SheetReference(referenceSheet, location);
+    }
+    
+    /**
+     * Helper method to read the sheet out of a reference
+     * @param term a reference, like B3 or Sheet2!B3
+     * @param sheet the name of the sheet the formula is on, or null
+     * @return the sheet named by {@code term}, or null if it doesn't name one or names the sheet of the formula
+     */
+    private static String sheetOf(String term, String sheet) {
+        int separator = term.indexOf('!');
+        if (separator < 0 || term.substring(0, separator).equalsIgnoreCase(sheet)) return null;
+        return term.substring(0, separator);
+    }
+    
+    /**
+     * A constant numeric value
+     */
+    public static class Constant extends Expression {
+        private final double value;
+        
+        public Constant(double value) {
+            this.value = value;
+        }
+        
+        @Override
+        public double evaluate(Spreadsheet spreadsheet) {
+            return value;
+        }
+    }
+    
+    /**
+     * A reference to the value of another cell
+     */
+    public static class CellReference extends Expression {
+        private final int row;
+        private final int col;
+        
+        public CellReference(Location location) {
+            this.row = location.getRow();
+            this.col = location.getCol();
+        }
+        
+        /**
+         * @return the row of the referenced cell
+         */
+        public int getRow() {
+            return row;
+        }
+        
+        /**
+         * @return the column of the referenced cell
+         */
+        public int getCol() {
+            return col;
+        }
+        
+        @Override
+        public double evaluate(Spreadsheet spreadsheet) {
+            // casting issues are caught by isValid before evaluating
+            return ((RealCell) spreadsheet.getCell(row, col)).getDoubleValue();
+        }
+        
+        @Override
+        public boolean isValid(Spreadsheet spreadsheet) {
+            return isValidOperand(spreadsheet.getCell(row, col));
+        }
+        
+        @Override
+        public void addReferences(Set<Long> references, List<CellRange> ranges, List<SheetRange> sheetRanges) {
+            references.add(SpreadsheetLocation.pack(row, col));
+        }
+    }
+    
+    /**
+     * A reference to the value of a cell on another sheet of the workbook
+     */
+    public static class SheetReference extends Expression {
+        private final String sheet;
+        private final int row;
+        private final int col;
+        
+        public SheetReference(String sheet, Location location) {
+            this.sheet = sheet;
+            this.row = location.getRow();
+            this.col = location.getCol();
+        }
+        
+        @Override
+        public double evaluate(Spreadsheet spreadsheet) {
+            // a missing sheet or cell is caught by isValid before evaluating
+            return ((RealCell) resolve(spreadsheet, sheet).getCell(row, col)).getDoubleValue();
+        }
+        
+        @Override
+        public boolean isValid(Spreadsheet spreadsheet) {
+            Spreadsheet target = resolve(spreadsheet, sheet);
+            return target != null && row < target.getRows() && col < target.getCols()
+                    && isValidOperand(target.getCell(row, col));
+        }
+        
+        @Override
+        public void addReferences(Set<Long> references, List<CellRange> ranges, List<SheetRange> sheetRanges) {
+            sheetRanges.add(new SheetRange(sheet, new CellRange(row, col, row, col)));
+        }
+    }
+    
+    /**
+     * An arithmetic operation on two sub-expressions
+     */
+    public static class BinaryOperation extends Expression {
+        private final char operator;
+        private final Expression left;
+        private final Expression right;
+        
+        public BinaryOperation(char operator, Expression left, Expression right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+        
+        @Override
+        public double evaluate(Spreadsheet spreadsheet) {
+            double firstValue = left.evaluate(spreadsheet);
+            double secondValue = right.evaluate(spreadsheet);
+            
+            switch (operator) {
+                case '*': return firstValue * secondValue;
+                case '/': return firstValue / secondValue;
+                case '+': return firstValue + secondValue;
+                default: return firstValue - secondValue;
+            }
+        }
+        
+        @Override
+        public boolean isValid(Spreadsheet spreadsheet) {
+            if (!left.isValid(spreadsheet) || !right.isValid(spreadsheet)) return false;
+            // the divisor is always a single operand, so evaluating it is just a lookup
+            return operator != '/' || right.evaluate(spreadsheet) != 0.0;
+        }
+        
+        @Override
+        public void addReferences(Set<Long> references, List<CellRange> ranges, List<SheetRange> sheetRanges) {
+            left.addReferences(references, ranges, sheetRanges);
+            right.addReferences(references, ranges, sheetRanges);
+        }
+        
+        @Override
+        public void prepare(Spreadsheet spreadsheet) {
+            left.prepare(spreadsheet);
+            right.prepare(spreadsheet);
+        }
+    }
+    
+    /**
+     * A function over a rectangular range of cells: SUM, AVG, MIN, MAX, COUNT, STDEV or MEDIAN
+     *
+     * Small ranges are simply visited in order, which is as fast as anything else and keeps the exact
+     * floating point result of adding cells one by one. Larger ranges are answered by the spreadsheet's
+     * {@link RangeIndex} without visiting their cells at all. The range can be on another sheet.
+     * COUNT counts the valid numbers in the range, every other function needs all of its cells to be one.
+     */
+    public static class RangeFunction extends Expression {
+        private static final int INDEXED_AREA = 64;
+        
+        /**
+         * The functions, each with the smallest range it gives a meaningful result for
+         */
+        public enum Aggregate {
+            SUM(0), AVG(0), MIN(1), MAX(1), COUNT(0), STDEV(2), MEDIAN(1);
+            
+            private final int minimumArea;
+            
+            Aggregate(int minimumArea) {
+                this.minimumArea = minimumArea;
+            }
+            
+            /**
+             * @param name the name of a function, ignoring case
+             * @return the function, or null if there is no function of that name
+             */
+            public static Aggregate named(String name) {
+                for (Aggregate aggregate : values()) {
+                    if (aggregate.name().equalsIgnoreCase(name)) return aggregate;
+                }
+                return null;
+            }
+        }
+        
+        private final Aggregate aggregate;
+        // null for a range on the sheet of the formula
+        private final String sheet;
+        private final CellRange range;
+        
+        public RangeFunction(Aggregate aggregate, String sheet, Location start, Location end) {
+            this.aggregate = aggregate;
+            this.sheet = sheet;
+            this.range = new CellRange(start, end);
+        }
+        
+        @Override
+        public double evaluate(Spreadsheet spreadsheet) {
+            spreadsheet = resolve(spreadsheet, sheet);
+            if (range.getArea() > INDEXED_AREA) {
+                RangeIndex index = spreadsheet.getRangeIndex();
+                switch (aggregate) {
+                    case SUM: return index.sum(range);
+                    case AVG: return index.sum(range) / range.getArea();
+                    case MIN: return index.min(range);
+                    case MAX: return index.max(range);
+                    case COUNT: return index.count(range);
+                    case STDEV: return index.standardDeviation(range);
+                    default: return index.median(range);
+                }
+            }
+            
+            if (aggregate == Aggregate.MEDIAN) return median(spreadsheet);
+            
+            // everything but the median is accumulated in one pass, without collecting the values
+            long count = 0;
+            double total = 0;
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            double mean = 0;
+            double deviations = 0;
+            for (int row = range.getTop(); row <= range.getBottom(); row++) {
+                for (int col = range.getLeft(); col <= range.getRight(); col++) {
+                    // only COUNT lets invalid cells through isValid
+                    Cell cell = spreadsheet.getCell(row, col);
+                    if (!isValidOperand(cell)) continue;
+                    
+                    double value = ((RealCell) cell).getDoubleValue();
+                    count++;
+                    total += value;
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                    if (aggregate == Aggregate.STDEV) {
+                        // running mean and sum of squared deviations from it
+                        double delta = value - mean;
+                        mean += delta / count;
+                        deviations += delta * (value - mean);
+                    }
+                }
+            }
+            
+            switch (aggregate) {
+                case SUM: return total;
+                case AVG: return total / range.getArea();
+                case COUNT: return count;
+                case MIN: return min;
+                case MAX: return max;
+                default: return Math.sqrt(deviations / (count - 1));
+            }
+        }
+        
+        /**
+         * Helper method to find the median of a small range, the only function that needs its values collected
+         * @param spreadsheet the spreadsheet the range is on
+         * @return the median of the valid numbers in the range
+         */
+        private double median(Spreadsheet spreadsheet) {
+            double[] values = new double[(int) range.getArea()];
+            int count = 0;
+            for (int row = range.getTop(); row <= range.getBottom(); row++) {
+                for (int col = range.getLeft(); col <= range.getRight(); col++) {
+                    Cell cell = spreadsheet.getCell(row, col);
+                    if (isValidOperand(cell)) values[count++] = ((RealCell) cell).getDoubleValue();
+                }
+            }
+            Arrays.sort(values, 0, count);
+            return count % 2 == 1 ? values[count / 2] : (values[count / 2 - 1] + values[count / 2]) / 2;
+        }
+        
+        @Override
+        public boolean isValid(Spreadsheet spreadsheet) {
+            spreadsheet = resolve(spreadsheet, sheet);
+            if (spreadsheet == null || range.getBottom() >= spreadsheet.getRows() || range.getRight() >= spreadsheet.getCols()) {
+                return false;
+            }
+            if (aggregate == Aggregate.COUNT) return true;
+            if (range.getArea() < aggregate.minimumArea) return false;
+            
+            // all cells in range must be valid
+            if (range.getArea() > INDEXED_AREA) return spreadsheet.getRangeIndex().count(range) == range.getArea();
+            
+            for (int row = range.getTop(); row <= range.getBottom(); row++) {
+                for (int col = range.getLeft(); col <= range.getRight(); col++) {
+                    if (!isValidOperand(spreadsheet.getCell(row, col))) return false;
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public void addReferences(Set<Long> references, List<CellRange> ranges, List<SheetRange> sheetRanges) {
+            if (sheet == null) ranges.add(range);
+            else sheetRanges.add(new SheetRange(sheet, range));
+        }
+        
+        @Override
+        public void prepare(Spreadsheet spreadsheet) {
+            spreadsheet = resolve(spreadsheet, sheet);
+            if (spreadsheet == null || range.getArea() <= INDEXED_AREA
+                    || range.getBottom() >= spreadsheet.getRows() || range.getRight() >= spreadsheet.getCols()) {
+                return;
+            }
+            spreadsheet.getRangeIndex().prepare(aggregate, range);
+        }
+    }
+}
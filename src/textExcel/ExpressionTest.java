@@ -0,0 +1,115 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExpressionTest {
+    private Spreadsheet sheet;
+    
+    @Before
+    public void createSheet() {
+        sheet = new Spreadsheet();
+    }
+    
+    /**
+     * Helper method to compile a formula the way FormulaCell does
+     * @param formula the formula, without the surrounding parentheses
+     * @return the compiled expression
+     */
+    private static Expression compile(String formula) {
+        return Expression.compile(formula.split(" "), null);
+    }
+    
+    @Test
+    public void testConstants() {
+        assertEquals(7.5, compile("7.5").evaluate(sheet), 0);
+        assertEquals(-3, compile("-3").evaluate(sheet), 0);
+    }
+    
+    @Test
+    public void testOperatorPrecedence() {
+        assertEquals(14, compile("2 + 3 * 4").evaluate(sheet), 0);
+        assertEquals(5, compile("2 * 3 - 4 / 4").evaluate(sheet), 0);
+        assertEquals(1, compile("8 / 4 / 2").evaluate(sheet), 0);
+        assertEquals(-4, compile("1 - 2 - 3").evaluate(sheet), 0);
+    }
+    
+    @Test
+    public void testCompiledTreeReadsCurrentValues() {
+        Expression expression = compile("A1 * 2 + B2");
+        sheet.processCommand("A1 = 3");
+        sheet.processCommand("B2 = 1");
+        assertEquals(7, expression.evaluate(sheet), 0);
+        
+        // the same tree is evaluated again, nothing is parsed a second time
+        sheet.processCommand("A1 = 10");
+        assertEquals(21, expression.evaluate(sheet), 0);
+    }
+    
+    @Test
+    public void testRangeFunctions() {
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("A2 = 2");
+        sheet.processCommand("B1 = 3");
+        sheet.processCommand("B2 = 6");
+        assertEquals(12, compile("SUM A1-B2").evaluate(sheet), 0);
+        assertEquals(3, compile("avg A1-B2").evaluate(sheet), 0);
+    }
+    
+    @Test
+    public void testReferences() {
+        HashSet<Long> references = new HashSet<>();
+        ArrayList<CellRange> ranges = new ArrayList<>();
+        compile("A1 + C3 * A1").addReferences(references, ranges, new ArrayList<SheetRange>());
+        assertEquals(2, references.size());
+        assertTrue(references.contains(SpreadsheetLocation.pack(0, 0)));
+        assertTrue(references.contains(SpreadsheetLocation.pack(2, 2)));
+        assertTrue(ranges.isEmpty());
+        
+        references.clear();
+        compile("SUM A1-B3").addReferences(references, ranges, new ArrayList<SheetRange>());
+        assertTrue(references.isEmpty());
+        assertEquals(1, ranges.size());
+        assertEquals(6, ranges.get(0).getArea());
+    }
+    
+    @Test
+    public void testInvalidOperand() {
+        sheet.processCommand("A1 = \"text\"");
+        assertFalse(compile("A1 + 1").isValid(sheet));
+        sheet.processCommand("A1 = 1");
+        assertTrue(compile("A1 + 1").isValid(sheet));
+    }
+    
+    @Test
+    public void testFormulaCellEvaluatesCompiledTree() {
+        sheet.processCommand("A1 = 2");
+        sheet.processCommand("B1 = ( A1 * A1 + 1 )");
+        FormulaCell formula = (FormulaCell) sheet.getCell(new SpreadsheetLocation("B1"));
+        assertEquals(5, formula.getDoubleValue(), 0);
+        sheet.processCommand("A1 = 5");
+        assertEquals(26, formula.getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testFormulaCellCopySharesExpression() {
+        sheet.processCommand("A1 = 2");
+        sheet.processCommand("B1 = ( A1 * A1 )");
+        FormulaCell formula = (FormulaCell) sheet.getCell("B1");
+        FormulaCell copy = formula.copy();
+        
+        sheet.processCommand("A1 = 5");
+        assertEquals(25, formula.getDoubleValue(), 0);
+        // the copy keeps the result it was made with
+        assertEquals(4, copy.getDoubleValue(), 0);
+        assertArrayEquals(formula.getReferences(), copy.getReferences());
+    }
+}
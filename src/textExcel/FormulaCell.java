@@ -4,103 +4,124 @@
 package textExcel;
 
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.LinkedHashSet;
 
 public class FormulaCell extends RealCell {
-    private final String[] equation;
+    private final Expression expression;
+    private final long[] references;
+    private final CellRange[] ranges;
+    private final SheetRange[] sheetRanges;
     private final Spreadsheet spreadsheet;
-    private Location location;
+    private double value;
+    private boolean error;
     
-    public FormulaCell(String input, Spreadsheet spreadsheet, Location location) {
+    public FormulaCell(String input, Spreadsheet spreadsheet) {
         super(input);
-        equation = input.substring(2, input.length() - 2).split(" ");
+        expression = Expression.compile(input.substring(2, input.length() - 2).split(" "), spreadsheet.getName());
+        
+        LinkedHashSet<Long> referenceSet = new LinkedHashSet<>();
+        ArrayList<CellRange> rangeList = new ArrayList<>();
+        ArrayList<SheetRange> sheetRangeList = new ArrayList<>();
+        expression.addReferences(referenceSet, rangeList, sheetRangeList);
+        references = new long[referenceSet.size()];
+        int i = 0;
+        for (long reference : referenceSet) references[i++] = reference;
+        ranges = rangeList.toArray(new CellRange[0]);
+        sheetRanges = sheetRangeList.toArray(new SheetRange[0]);
         
         this.spreadsheet = spreadsheet;
-        this.location = location;
     }
     
     /**
-     * @return the equation stored in this formula cell
+     * Copy constructor, the copy shares the compiled expression but has its own result
+     * @param other the formula to copy
+     */
+    private FormulaCell(FormulaCell other) {
+        super(other.rawInput);
+        this.expression = other.expression;
+        this.references = other.references;
+        this.ranges = other.ranges;
+        this.sheetRanges = other.sheetRanges;
+        this.spreadsheet = other.spreadsheet;
+        this.value = other.value;
+        this.error = other.error;
+    }
+    
+    /**
+     * @return a copy of this formula holding its current result, later recalculations of this formula don't change it
+     */
+    public FormulaCell copy() {
+        return new FormulaCell(this);
+    }
+    
+    /**
+     * @return the packed keys of every single cell this formula reads, without duplicates
      */
-    public String[] getEquation() {
-        return this.equation;
+    public long[] getReferences() {
+        return this.references;
     }
     
     /**
-     * @return this cell's location on the spreadsheet
+     * @return every range this formula reads
      */
-    public Location getLocation() {
-        return this.location;
+    public CellRange[] getRanges() {
+        return this.ranges;
     }
     
     /**
-     * Set the cell's location in the event the cell is moved from it's original location
-     * @param location the new location
+     * @return every cell and range this formula reads on other sheets of its workbook
      */
-    public void setLocation(Location location) {
-        this.location = location;
+    public SheetRange[] getSheetRanges() {
+        return this.sheetRanges;
+    }
+    
+    /**
+     * @return true if the last recalculation of this formula resulted in an error
+     */
+    public boolean hasError() {
+        return this.error;
     }
     
     /**
      * @return text for spreadsheet cell display, must be exactly length 10
      */
     @Override
-    public String abbreviatedCellText() {
-        if (spreadsheet.isValidFormula(this, location))return (getDoubleValue() + "          ").substring(0, 10);
-        return "#ERROR    ";
+    protected String abbreviate() {
+        if (error) return "#ERROR    ";
+        return (value + "          ").substring(0, 10);
+    }
+    
+    /**
+     * Re-evaluates the formula and caches the result along with whether or not it is an error
+     * The spreadsheet calls this in dependency order, so every referenced formula is already up to date
+     */
+    public void recalculate() {
+        error = !expression.isValid(spreadsheet);
+        value = error ? Double.NaN : expression.evaluate(spreadsheet);
+        invalidateAbbreviation();
+    }
+    
+    /**
+     * Builds whatever recalculating would otherwise build on first use, see {@link Expression#prepare(Spreadsheet)}
+     */
+    public void prepare() {
+        expression.prepare(spreadsheet);
     }
     
+    /**
+     * Marks this formula as an error without evaluating it, used for formulas caught in a reference cycle
+     */
+    public void markCircular() {
+        error = true;
+        value = Double.NaN;
+        invalidateAbbreviation();
+    }
+    
+    /**
+     * @return the cached result of the last recalculation
+     */
     @Override
     public double getDoubleValue() {
-        if (equation[0].equalsIgnoreCase("AVG") || equation[0].equalsIgnoreCase("SUM")) {
-            ArrayList<Cell> cellRange = spreadsheet.getCellsInRange(equation[1]);
-            double total = 0;
-            int numCells = cellRange.size();
-            
-            for (Cell cell : cellRange) {
-                // assume all casting issues will be dealt with elsewhere
-                total += ((RealCell) cell).getDoubleValue();
-            }
-            
-            return equation[0].equalsIgnoreCase("AVG") ? total / numCells : total;
-            
-        } else {
-            // if not a command, it is an arithmetic expression
-            ArrayList<String> expression = new ArrayList<>(Arrays.asList(equation));
-            String[][] operators = {{"*", "/"}, {"+", "-"}};
-            
-            for (String[] operatorPriority : operators) {
-                
-                int opIndex = 1;
-                while (expression.contains(operatorPriority[0]) || expression.contains(operatorPriority[1])) {
-                    
-                    String operator = expression.get(opIndex);
-                    if (operator.equals(operatorPriority[0]) || operator.equals(operatorPriority[1])) {
-                        
-                        double firstValue = spreadsheet.parseOperand(expression.get(opIndex - 1));
-                        double secondValue = spreadsheet.parseOperand(expression.get(opIndex + 1));
-                        
-                        double answer;
-    
-                        if ("*".equals(operator)) {
-                            answer = firstValue * secondValue;
-                        } else if ("/".equals(operator)) {
-                            answer = firstValue / secondValue;
-                        } else if ("+".equals(operator)) {
-                            answer = firstValue + secondValue;
-                        } else {
-                            answer = firstValue - secondValue;
-                        }
-                        
-                        expression.set(opIndex - 1, String.valueOf(answer));
-                        // shift everything back two indices
-                        expression.remove(opIndex);
-                        expression.remove(opIndex);
-                
-                    } else opIndex += 2;  // check the next operator index
-                }
-            }
-            return spreadsheet.parseOperand(expression.get(0));
-        }
+        return value;
     }
 }
@@ -0,0 +1,88 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FormulaErrorTest {
+    private Spreadsheet sheet;
+    
+    @Before
+    public void createSheet() {
+        sheet = new Spreadsheet();
+    }
+    
+    /**
+     * Helper method to check whether or not a cell shows as an error
+     * @param location the name of the cell
+     * @return true if the cell is a formula with an error
+     */
+    private boolean isError(String location) {
+        Cell cell = sheet.getCell(location);
+        return cell instanceof FormulaCell && ((FormulaCell) cell).hasError();
+    }
+    
+    @Test
+    public void testSelfReference() {
+        sheet.processCommand("A1 = ( A1 + 1 )");
+        assertTrue(isError("A1"));
+        assertEquals("#ERROR    ", sheet.getCell("A1").abbreviatedCellText());
+    }
+    
+    @Test
+    public void testCycleAndEverythingReadingIt() {
+        sheet.processCommand("A1 = ( B1 )");
+        sheet.processCommand("C1 = ( A1 * 2 )");
+        sheet.processCommand("B1 = ( A1 )");
+        assertTrue(isError("A1"));
+        assertTrue(isError("B1"));
+        assertTrue(isError("C1"));
+        
+        // breaking the cycle recalculates every formula it had caught
+        sheet.processCommand("B1 = 4");
+        assertFalse(isError("A1"));
+        assertFalse(isError("C1"));
+        assertEquals(8, ((FormulaCell) sheet.getCell("C1")).getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testCycleThroughRange() {
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("A3 = ( SUM A1-A2 )");
+        sheet.processCommand("A2 = ( A3 )");
+        assertTrue(isError("A2"));
+        assertTrue(isError("A3"));
+    }
+    
+    @Test
+    public void testOperandErrors() {
+        sheet.processCommand("A1 = \"text\"");
+        sheet.processCommand("B1 = ( A1 + 1 )");
+        sheet.processCommand("B2 = ( 1 / 0 )");
+        sheet.processCommand("B3 = ( C3 * 2 )");
+        assertTrue(isError("B1"));
+        assertTrue(isError("B2"));
+        assertTrue("an empty cell isn't a number", isError("B3"));
+        
+        // errors spread to formulas reading them and clear up with their cause
+        sheet.processCommand("B4 = ( B1 + 1 )");
+        assertTrue(isError("B4"));
+        sheet.processCommand("A1 = 2");
+        assertFalse(isError("B1"));
+        assertEquals(4, ((FormulaCell) sheet.getCell("B4")).getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testErrorsAreNotRecheckedOnRender() {
+        sheet.processCommand("A1 = ( B1 )");
+        sheet.processCommand("B1 = ( A1 )");
+        // rendering reads the cached flag, it doesn't run into the cycle again
+        String grid = sheet.getGridText();
+        assertTrue(grid.contains("#ERROR"));
+        assertEquals(grid, sheet.getGridText());
+    }
+}
@@ -0,0 +1,135 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.BitSet;
+
+/**
+ * A rendered window of a spreadsheet
+ *
+ * The rendered grid text is kept in a char buffer where every line has the same length, so when a cell
+ * changes only its row has to be re-rendered and written back over the old one. Cells cache their own
+ * abbreviated text, so re-rendering a row is mostly copying characters.
+ */
+public class GridView {
+    private static final int CELL_WIDTH = 10;
+    
+    private final CellGrid spreadsheet;
+    private final BitSet dirtyRows = new BitSet();
+    
+    private int top;
+    private int left;
+    private int bottom;
+    private int right;
+    
+    private char[] buffer;
+    private int labelWidth;
+    private int lineLength;
+    
+    public GridView(CellGrid spreadsheet, int top, int left, int rows, int columns) {
+        this.spreadsheet = spreadsheet;
+        moveTo(top, left, rows, columns);
+    }
+    
+    /**
+     * Moves the window, the window is clipped to the bounds of the spreadsheet
+     * @param top the first row of the window
+     * @param left the first column of the window
+     * @param rows the number of rows in the window
+     * @param columns the number of columns in the window
+     */
+    public void moveTo(int top, int left, int rows, int columns) {
+        this.top = top;
+        this.left = left;
+        this.bottom = Math.min(spreadsheet.getRows(), top + rows);
+        this.right = Math.min(spreadsheet.getCols(), left + columns);
+        invalidate();
+    }
+    
+    /**
+     * @param top the first row of the window
+     * @param left the first column of the window
+     * @param rows the number of rows in the window
+     * @param columns the number of columns in the window
+     * @return true if this view shows exactly that window, after clipping
+     */
+    public boolean shows(int top, int left, int rows, int columns) {
+        return this.top == top && this.left == left
+                && this.bottom == Math.min(spreadsheet.getRows(), top + rows)
+                && this.right == Math.min(spreadsheet.getCols(), left + columns);
+    }
+    
+    /**
+     * Marks a row as needing to be re-rendered, rows outside the window are ignored
+     * @param row the row that changed
+     */
+    public void markRowDirty(int row) {
+        if (buffer != null && row >= top && row < bottom) dirtyRows.set(row - top);
+    }
+    
+    /**
+     * Throws away the rendered text, so the whole window is rendered again next time
+     */
+    public void invalidate() {
+        buffer = null;
+        dirtyRows.clear();
+    }
+    
+    /**
+     * @return the window in grid text form for display, re-rendering only the rows that changed
+     */
+    public String getText() {
+        if (buffer == null) {
+            renderAll();
+        } else {
+            for (int i = dirtyRows.nextSetBit(0); i >= 0; i = dirtyRows.nextSetBit(i + 1)) renderRow(top + i);
+            dirtyRows.clear();
+        }
+        return new String(buffer);
+    }
+    
+    /**
+     * Helper method to lay out the buffer and render every line of the window
+     */
+    private void renderAll() {
+        // the row labels grow with the number of rows, but are never narrower than the original 3 characters
+        labelWidth = Math.max(3, String.valueOf(spreadsheet.getRows()).length());
+        lineLength = labelWidth + 1 + Math.max(0, right - left) * (CELL_WIDTH + 1) + 1;
+        buffer = new char[lineLength * (Math.max(0, bottom - top) + 1)];
+        
+        // draw the columns header
+        int pos = write("", 0, labelWidth);
+        for (int col = left; col < right; col++) pos = write(SpreadsheetLocation.columnName(col), pos, CELL_WIDTH);
+        buffer[pos] = '\n';
+        
+        for (int row = top; row < bottom; row++) renderRow(row);
+    }
+    
+    /**
+     * Helper method to render one row of the window over its line in the buffer
+     * @param row the row to render
+     */
+    private void renderRow(int row) {
+        int pos = write(String.valueOf(row + 1), (row - top + 1) * lineLength, labelWidth);
+        for (int col = left; col < right; col++) {
+            pos = write(spreadsheet.getCell(row, col).abbreviatedCellText(), pos, CELL_WIDTH);
+        }
+        buffer[pos] = '\n';
+    }
+    
+    /**
+     * Helper method to write text padded or truncated to a width, followed by a column separator
+     * @param text the text to write
+     * @param pos the index in the buffer to write at
+     * @param width the width to pad the text to
+     * @return the index in the buffer after the separator
+     */
+    private int write(String text, int pos, int width) {
+        int length = Math.min(text.length(), width);
+        text.getChars(0, length, buffer, pos);
+        for (int i = length; i < width; i++) buffer[pos + i] = ' ';
+        buffer[pos + width] = '|';
+        return pos + width + 1;
+    }
+}
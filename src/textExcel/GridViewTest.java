@@ -0,0 +1,157 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class GridViewTest {
+    /**
+     * A grid of numbered value cells that counts how often its cells are read
+     */
+    static class CountingGrid implements CellGrid {
+        private final int rows;
+        private final int columns;
+        final Cell[][] cells;
+        int reads;
+        
+        CountingGrid(int rows, int columns) {
+            this.rows = rows;
+            this.columns = columns;
+            cells = new Cell[rows][columns];
+            for (int row = 0; row < rows; row++) {
+                for (int col = 0; col < columns; col++) cells[row][col] = new ValueCell(Integer.toString(row * 100 + col));
+            }
+        }
+        
+        @Override
+        public Cell getCell(int row, int col) {
+            reads++;
+            return cells[row][col];
+        }
+        
+        @Override
+        public Cell getCell(Location loc) {
+            return getCell(loc.getRow(), loc.getCol());
+        }
+        
+        @Override
+        public int getRows() {
+            return rows;
+        }
+        
+        @Override
+        public int getCols() {
+            return columns;
+        }
+        
+        @Override
+        public String processCommand(String command) {
+            return "";
+        }
+        
+        @Override
+        public String getGridText() {
+            return new GridView(this, 0, 0, rows, columns).getText();
+        }
+    }
+    
+    @Test
+    public void testOnlyTheWindowIsRead() {
+        CountingGrid grid = new CountingGrid(1000, 50);
+        String text = new GridView(grid, 10, 5, 3, 2).getText();
+        assertEquals(6, grid.reads);
+        
+        String[] lines = text.split("\n");
+        assertEquals(4, lines.length);
+        assertEquals("    |F         |G         |", lines[0]);
+        assertTrue(lines[1].startsWith("11  |1005.0    |1006.0    |"));
+        assertTrue(lines[3].startsWith("13  |1205.0    |1206.0    |"));
+    }
+    
+    @Test
+    public void testWindowIsClipped() {
+        CountingGrid grid = new CountingGrid(5, 4);
+        String[] lines = new GridView(grid, 3, 2, 20, 12).getText().split("\n");
+        // rows 4 and 5, columns C and D
+        assertEquals(3, lines.length);
+        assertEquals("   |C         |D         |", lines[0]);
+        assertEquals(4, grid.reads);
+    }
+    
+    @Test
+    public void testViewCommand() {
+        Spreadsheet sheet = new Spreadsheet(SpreadsheetLocation.MAX_ROWS, 100);
+        sheet.processCommand("CV1048576 = 9");
+        String text = sheet.processCommand("view CU1048575 5 5");
+        String[] lines = text.split("\n");
+        assertEquals(3, lines.length);
+        // the row labels are as wide as the largest row number
+        assertTrue(lines[0].startsWith("       |CU        |CV        |"));
+        assertTrue(lines[2].startsWith("1048576|          |9.0       |"));
+        
+        assertTrue(sheet.processCommand("view CW1").startsWith("ERROR"));
+        assertEquals(text, sheet.getViewText());
+    }
+    
+    @Test
+    public void testGridTextOfAWindow() {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("B2 = \"hi\"");
+        String window = sheet.getGridText(new SpreadsheetLocation("B2"), 1, 1);
+        assertEquals("   |B         |\n2  |hi        |\n", window);
+    }
+    
+    @Test
+    public void testOnlyDirtyRowsAreRendered() {
+        CountingGrid grid = new CountingGrid(20, 12);
+        GridView view = new GridView(grid, 0, 0, 20, 12);
+        view.getText();
+        grid.reads = 0;
+        
+        grid.cells[4][3] = new TextCell("\"changed\"");
+        view.markRowDirty(4);
+        view.markRowDirty(50);  // outside the window
+        String text = view.getText();
+        assertEquals(12, grid.reads);
+        assertTrue(text.split("\n")[5].contains("|changed   |"));
+        
+        // nothing changed, nothing is read
+        grid.reads = 0;
+        assertEquals(text, view.getText());
+        assertEquals(0, grid.reads);
+        
+        view.invalidate();
+        view.getText();
+        assertEquals(240, grid.reads);
+    }
+    
+    @Test
+    public void testAbbreviationIsCached() {
+        ValueCell value = new ValueCell("3.25");
+        assertSame(value.abbreviatedCellText(), value.abbreviatedCellText());
+        
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("B1 = ( A1 + 1 )");
+        Cell formula = sheet.getCell("B1");
+        assertEquals("2.0       ", formula.abbreviatedCellText());
+        
+        // a formula drops its cached text when it is recalculated
+        sheet.processCommand("A1 = 5");
+        assertEquals("6.0       ", formula.abbreviatedCellText());
+    }
+    
+    @Test
+    public void testRedrawAfterEdits() {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("C3 = ( A1 * 3 )");
+        String text = sheet.processCommand("A1 = 2");
+        // the row of the formula is redrawn along with the row of the edit
+        assertEquals(new GridView(sheet, 0, 0, 20, 12).getText(), text);
+        assertTrue(text.split("\n")[3].startsWith("3  |          |          |6.0       |"));
+    }
+}
@@ -0,0 +1,279 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal of the commands that changed a spreadsheet, for recovering after a crash
+ *
+ * Every command that changes the sheet is appended as a line holding a sequence number, a checksum and the
+ * command. Lines are buffered and forced to disk in groups, either once enough have piled up or after a
+ * short delay, so one fsync covers many commands. Every so often the whole sheet is saved as a checkpoint
+ * next to the journal, named after the last sequence number it includes, and the journal starts over.
+ *
+ * Recovering opens the newest checkpoint and replays the journal lines after it. A line torn by a crash
+ * fails its checksum, and replay stops there.
+ */
+public class Journal implements Closeable {
+    private static final int DEFAULT_SYNC_EVERY = 64;
+    private static final long DEFAULT_SYNC_DELAY_MILLIS = 100;
+    private static final int DEFAULT_CHECKPOINT_EVERY = 10000;
+    private static final String CHECKPOINT_SUFFIX = ".sheet";
+
+    private final Path path;
+    private final FileChannel channel;
+    private final BufferedWriter out;
+    private final int syncEvery;
+    private final int checkpointEvery;
+    private final ScheduledExecutorService syncer;
+
+    private long sequence;
+    private int unsynced;
+    private int sinceCheckpoint;
+
+    /**
+     * Constructor that starts appending to a journal file, use {@link #open(Path, Spreadsheet)} to recover first
+     * @param path the journal file, created if it doesn't exist
+     * @param sequence the sequence number of the last command already in the journal or a checkpoint
+     * @param syncEvery how many commands may be buffered before they are forced to disk
+     * @param syncDelayMillis how long a buffered command may wait to be forced to disk
+     * @param checkpointEvery how many commands are journaled between checkpoints
+     * @throws IOException if the journal can't be opened
+     */
+    public Journal(Path path, long sequence, int syncEvery, long syncDelayMillis, int checkpointEvery) throws IOException {
+        this.path = path;
+        this.sequence = sequence;
+        this.syncEvery = syncEvery;
+        this.checkpointEvery = checkpointEvery;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+
+        this.syncer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "textExcel-journal-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        syncer.scheduleWithFixedDelay(() -> {
+            try {
+                sync();
+            } catch (IOException e) {
+                // the next append syncs again and reports the failure to the user
+            }
+        }, syncDelayMillis, syncDelayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Recovers a spreadsheet from a journal and its newest checkpoint, then keeps journaling its changes
+     * @param path the journal file, a new journal is started if it doesn't exist
+     * @param sheet the spreadsheet to recover into, its current contents are replaced if there is a checkpoint
+     * @return the journal, already attached to {@code sheet}
+     * @throws IOException if the journal or checkpoint can't be read
+     */
+    public static Journal open(Path path, Spreadsheet sheet) throws IOException {
+        long sequence = 0;
+        Path checkpoint = findNewestCheckpoint(path);
+        if (checkpoint != null) {
+            sheet.open(checkpoint);
+            sequence = checkpointSequence(path, checkpoint);
+        }
+
+        ArrayList<String> commands = new ArrayList<>();
+        if (Files.exists(path)) {
+            try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                for (String line = in.readLine(); line != null; line = in.readLine()) {
+                    String[] parts = line.split(" ", 3);
+                    if (parts.length < 3 || !parts[1].equals(checksum(parts[2]))) break;  // torn by a crash
+
+                    long lineSequence;
+                    try {
+                        lineSequence = Long.parseLong(parts[0]);
+                    } catch (NumberFormatException e) {
+                        break;
+                    }
+                    // lines already in the checkpoint are left over from a crash during the checkpoint
+                    if (lineSequence <= sequence) continue;
+                    commands.add(parts[2]);
+                    sequence = lineSequence;
+                }
+            }
+        }
+        sheet.processBatch(commands, output -> { });
+
+        Journal journal = new Journal(path, sequence, DEFAULT_SYNC_EVERY, DEFAULT_SYNC_DELAY_MILLIS, DEFAULT_CHECKPOINT_EVERY);
+        sheet.setJournal(journal);
+        return journal;
+    }
+
+    /**
+     * Appends a command that changed the spreadsheet, checkpointing if it is time to
+     * @param sheet the spreadsheet the command ran on
+     * @param command the command
+     * @throws IOException if writing the journal or the checkpoint fails
+     */
+    public void append(Spreadsheet sheet, String command) throws IOException {
+        synchronized (this) {
+            sequence++;
+            out.write(Long.toString(sequence));
+            out.write(' ');
+            out.write(checksum(command));
+            out.write(' ');
+            out.write(command);
+            out.newLine();
+            if (++unsynced >= syncEvery) sync();
+            if (++sinceCheckpoint >= checkpointEvery) checkpoint(sheet);
+        }
+    }
+
+    /**
+     * Saves the whole spreadsheet as a checkpoint and starts the journal over
+     * Needed after commands that read other files, since replaying them could read something different.
+     * @param sheet the spreadsheet
+     * @throws IOException if the checkpoint can't be written
+     */
+    public synchronized void checkpoint(Spreadsheet sheet) throws IOException {
+        Path checkpoint = checkpointPath(sequence);
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        sheet.save(temporary);
+        try (FileChannel saved = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+            saved.force(true);
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+        // the checkpoint is durable, so the journal and older checkpoints aren't needed anymore
+        out.flush();
+        channel.truncate(0);
+        channel.force(true);
+        unsynced = 0;
+        sinceCheckpoint = 0;
+        deleteCheckpointsBefore(sequence);
+    }
+
+    /**
+     * Forces buffered commands to disk
+     * @throws IOException if writing fails
+     */
+    public synchronized void sync() throws IOException {
+        if (unsynced == 0) return;
+        out.flush();
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        syncer.shutdownNow();
+        synchronized (this) {
+            sync();
+            out.close();
+        }
+    }
+
+    /**
+     * Helper method to checksum a command, so torn lines can be told apart from whole ones
+     * @param command the command
+     * @return the CRC32 of the command in hex
+     */
+    private static String checksum(String command) {
+        CRC32 crc = new CRC32();
+        byte[] bytes = command.getBytes(StandardCharsets.UTF_8);
+        crc.update(bytes, 0, bytes.length);
+        return Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * @param sequence the last sequence number in the checkpoint
+     * @return the file of that checkpoint
+     */
+    private Path checkpointPath(long sequence) {
+        return path.resolveSibling(path.getFileName() + "." + sequence + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Helper method to read the sequence number out of the name of a checkpoint
+     * @param journal the journal file
+     * @param checkpoint a checkpoint of that journal
+     * @return the last sequence number in the checkpoint, or -1 if the name isn't one of a checkpoint
+     */
+    private static long checkpointSequence(Path journal, Path checkpoint) {
+        String prefix = journal.getFileName() + ".";
+        String name = checkpoint.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(CHECKPOINT_SUFFIX)) return -1;
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - CHECKPOINT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param journal the journal file
+     * @return the checkpoint with the highest sequence number, or null if there is none
+     * @throws IOException if the directory can't be listed
+     */
+    private static Path findNewestCheckpoint(Path journal) throws IOException {
+        Path newest = null;
+        long newestSequence = -1;
+        for (Path checkpoint : listCheckpoints(journal)) {
+            long sequence = checkpointSequence(journal, checkpoint);
+            if (sequence > newestSequence) {
+                newest = checkpoint;
+                newestSequence = sequence;
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Helper method to remove checkpoints that a newer one replaces, failing quietly if one is still in use
+     * @param sequence the sequence number of the newest checkpoint
+     */
+    private void deleteCheckpointsBefore(long sequence) throws IOException {
+        for (Path checkpoint : listCheckpoints(path)) {
+            long checkpointSequence = checkpointSequence(path, checkpoint);
+            if (checkpointSequence < 0 || checkpointSequence >= sequence) continue;
+            try {
+                Files.deleteIfExists(checkpoint);
+            } catch (IOException e) {
+                // an opened checkpoint can't be deleted on some systems, the next checkpoint tries again
+            }
+        }
+    }
+
+    /**
+     * @param journal the journal file
+     * @return every file next to the journal named like one of its checkpoints
+     * @throws IOException if the directory can't be listed
+     */
+    private static ArrayList<Path> listCheckpoints(Path journal) throws IOException {
+        Path directory = journal.toAbsolutePath().getParent();
+        ArrayList<Path> checkpoints = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, journal.getFileName() + ".*" + CHECKPOINT_SUFFIX)) {
+            for (Path file : files) {
+                if (checkpointSequence(journal, file) >= 0) checkpoints.add(file);
+            }
+        } catch (NoSuchFileException e) {
+            // no directory, no checkpoints
+        }
+        return checkpoints;
+    }
+}
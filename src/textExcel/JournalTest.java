@@ -0,0 +1,121 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JournalTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private Path path;
+    
+    @Before
+    public void createPath() {
+        path = folder.getRoot().toPath().resolve("sheet.journal");
+    }
+    
+    /**
+     * Helper method to recover a fresh spreadsheet from the journal and close the journal again
+     * @return the recovered spreadsheet
+     * @throws IOException if recovering fails
+     */
+    private Spreadsheet recover() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        Journal.open(path, sheet).close();
+        return sheet;
+    }
+    
+    /**
+     * @return the names of the checkpoints next to the journal
+     * @throws IOException if the folder can't be listed
+     */
+    private String[] checkpoints() throws IOException {
+        return folder.getRoot().list((directory, name) -> name.endsWith(".sheet"));
+    }
+    
+    @Test
+    public void testReplayAfterReopening() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        try (Journal journal = Journal.open(path, sheet)) {
+            sheet.processCommand("A1 = 3");
+            sheet.processCommand("A2 = ( A1 * 2 )");
+            sheet.processCommand("B1 = \"kept\"");
+            sheet.processCommand("A1 = 5");
+        }
+        
+        Spreadsheet recovered = recover();
+        assertEquals("5", recovered.processCommand("A1"));
+        assertEquals("( A1 * 2 )", recovered.processCommand("A2"));
+        assertEquals("\"kept\"", recovered.processCommand("B1"));
+        assertEquals(10, ((FormulaCell) recovered.getCell("A2")).getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testTornLineStopsReplay() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        try (Journal journal = Journal.open(path, sheet)) {
+            sheet.processCommand("A1 = 1");
+            sheet.processCommand("A2 = 2");
+        }
+        // a crash in the middle of a write leaves half a line, and nothing after it can be trusted
+        Files.write(path, "3 deadbeef A3 = 3\n4 ".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        
+        Spreadsheet recovered = recover();
+        assertEquals("1", recovered.processCommand("A1"));
+        assertEquals("2", recovered.processCommand("A2"));
+        assertEquals("", recovered.processCommand("A3"));
+    }
+    
+    @Test
+    public void testCheckpointRollover() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        try (Journal journal = new Journal(path, 0, 1, 1000, 3)) {
+            sheet.setJournal(journal);
+            for (int row = 1; row <= 7; row++) sheet.processCommand("A" + row + " = " + row);
+        }
+        
+        // the second checkpoint replaces the first, and only the command after it is left in the journal
+        assertArrayEquals(new String[] {"sheet.journal.6.sheet"}, checkpoints());
+        List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith("7 "));
+        
+        Spreadsheet recovered = recover();
+        for (int row = 1; row <= 7; row++) assertEquals(Integer.toString(row), recovered.processCommand("A" + row));
+    }
+    
+    @Test
+    public void testFailedCommandsAreNotJournaled() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        try (Journal journal = new Journal(path, 0, 1, 1000, 100)) {
+            sheet.setJournal(journal);
+            assertTrue(sheet.processCommand("undo").startsWith("ERROR"));
+            assertTrue(sheet.processCommand("redo").startsWith("ERROR"));
+            assertTrue(sheet.processCommand("open " + folder.getRoot().toPath().resolve("missing.bin")).startsWith("ERROR"));
+            assertTrue(sheet.processCommand("restore nothing").startsWith("ERROR"));
+            assertTrue(sheet.processCommand("A1 = ( Z99 + 1 )").startsWith("ERROR"));
+            sheet.processCommand("clear A1");
+            assertEquals(0, checkpoints().length);
+            assertEquals(0, Files.size(path));
+            
+            // an undo that changes something still checkpoints
+            sheet.processCommand("A1 = 1");
+            sheet.processCommand("undo");
+            assertArrayEquals(new String[] {"sheet.journal.1.sheet"}, checkpoints());
+        }
+    }
+}
@@ -0,0 +1,120 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.BitSet;
+
+/**
+ * Cell storage for an opened sheet file, cells are only read from the file when asked for
+ *
+ * Cells set after opening go into an ordinary storage layered on top of the file. A cell of the file
+ * that has been overwritten or cleared is marked as replaced, so the file itself is never written to.
+ * Formulas have to be in the dependency graph from the start, so the spreadsheet sets those right away
+ * and only values, percents and text are left in the file.
+ *
+ * A cell read from the file is kept until the storage is cleared, so a redraw reuses the cell and its
+ * cached abbreviated text. The record of a cell never changes, only whether it has been replaced, so the
+ * cells built so far are shared with snapshots along with the file.
+ *
+ * A snapshot shares the file, which never changes, and takes a snapshot of the overlay.
+ */
+public class MappedCellStorage implements CellStorage {
+    // moved into tiled storage if a snapshot is taken and it can't take one itself
+    private CellStorage overlay;
+    // null once cleared, there is nothing left to read from it
+    private SheetFile file;
+    private final BitSet replaced;
+    // the cells built for the records that have been read, by record
+    private Cell[] built;
+    
+    /**
+     * @param file the opened file
+     * @param overlay an empty storage for cells set after opening
+     */
+    public MappedCellStorage(SheetFile file, CellStorage overlay) {
+        this(file, overlay, new BitSet(), new Cell[file.size()]);
+    }
+    
+    private MappedCellStorage(SheetFile file, CellStorage overlay, BitSet replaced, Cell[] built) {
+        this.file = file;
+        this.overlay = overlay;
+        this.replaced = replaced;
+        this.built = built;
+    }
+    
+    /**
+     * @return the storage for cells set after opening
+     */
+    public CellStorage getOverlay() {
+        return overlay;
+    }
+    
+    @Override
+    public Cell get(int row, int col) {
+        Cell cell = overlay.get(row, col);
+        if (!(cell instanceof EmptyCell) || file == null) return cell;
+        
+        int record = file.find(SpreadsheetLocation.pack(row, col));
+        if (record < 0 || replaced.get(record)) return EmptyCell.INSTANCE;
+        
+        // reads can come from several threads at once, the worst a race does is build a cell twice
+        Cell read = built[record];
+        if (read == null) built[record] = read = materialize(record);
+        return read;
+    }
+    
+    @Override
+    public void set(int row, int col, Cell cell) {
+        if (file != null) {
+            int record = file.find(SpreadsheetLocation.pack(row, col));
+            if (record >= 0) replaced.set(record);
+        }
+        overlay.set(row, col, cell);
+    }
+    
+    @Override
+    public void clear() {
+        file = null;
+        built = null;
+        replaced.clear();
+        overlay.clear();
+    }
+    
+    @Override
+    public CellStorage snapshot() {
+        CellStorage overlaySnapshot = overlay.snapshot();
+        if (overlaySnapshot == null) {
+            overlay = TiledCellStorage.copyOf(overlay);
+            overlaySnapshot = overlay.snapshot();
+        }
+        return new MappedCellStorage(file, overlaySnapshot, (BitSet) replaced.clone(), built);
+    }
+    
+    @Override
+    public void forEach(CellVisitor visitor) {
+        if (file != null) {
+            for (int record = replaced.nextClearBit(0); record < file.size(); record = replaced.nextClearBit(record + 1)) {
+                long key = file.getKey(record);
+                // visiting everything doesn't fill the cache, a built cell is only kept if somebody has it already
+                Cell cell = built[record] != null ? built[record] : materialize(record);
+                visitor.visit(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key), cell);
+            }
+        }
+        overlay.forEach(visitor);
+    }
+    
+    /**
+     * Helper method to build the cell of a record
+     * @param record the index of the record in the file
+     * @return the cell
+     */
+    private Cell materialize(int record) {
+        switch (file.getType(record)) {
+            case SheetFile.VALUE: return new ValueCell(file.getInput(record));
+            case SheetFile.PERCENT: return new PercentCell(file.getInput(record));
+            case SheetFile.TEXT: return new TextCell(file.getInput(record));
+            default: throw new IllegalStateException("formulas have to be set when the file is opened");
+        }
+    }
+}
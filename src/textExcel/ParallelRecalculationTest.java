@@ -0,0 +1,60 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ParallelRecalculationTest {
+    private static final int ROWS = 5000;
+    
+    /**
+     * Helper method to build a sheet with a wide level of formulas over column A and a chain summing them
+     * @param threshold the parallel threshold of the sheet
+     * @return the sheet
+     */
+    private static Spreadsheet build(int threshold) {
+        Spreadsheet sheet = new Spreadsheet(ROWS, 4);
+        sheet.setParallelThreshold(threshold);
+        sheet.processCommand("D1 = 3");
+        for (int row = 1; row <= ROWS; row++) {
+            sheet.processCommand("A" + row + " = " + row);
+            sheet.processCommand("B" + row + " = ( A" + row + " * D1 + 1 )");
+        }
+        sheet.processCommand("C1 = ( SUM B1-B" + ROWS + " )");
+        sheet.processCommand("C2 = ( C1 / 2 )");
+        return sheet;
+    }
+    
+    @Test
+    public void testParallelMatchesSerial() {
+        Spreadsheet parallel = build(1);
+        Spreadsheet serial = build(Integer.MAX_VALUE);
+        
+        // one edit puts every B formula into a single level, which is then spread across threads
+        for (String edit : new String[] {"D1 = 7", "D1 = -2.5", "D1 = \"not a number\"", "D1 = 1"}) {
+            parallel.processCommand(edit);
+            serial.processCommand(edit);
+            for (int row = 0; row < ROWS; row++) {
+                assertEquals(serial.getCell(row, 1).abbreviatedCellText(), parallel.getCell(row, 1).abbreviatedCellText());
+            }
+            assertEquals(serial.getCell(1, 2).abbreviatedCellText(), parallel.getCell(1, 2).abbreviatedCellText());
+        }
+        assertEquals((long) ROWS * (ROWS + 1) / 2 + ROWS, ((FormulaCell) parallel.getCell("C1")).getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testParallelErrors() {
+        Spreadsheet sheet = build(1);
+        sheet.processCommand("D1 = \"x\"");
+        for (int row = 0; row < ROWS; row++) assertTrue(((FormulaCell) sheet.getCell(row, 1)).hasError());
+        assertTrue(((FormulaCell) sheet.getCell("C2")).hasError());
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreshold() {
+        new Spreadsheet().setParallelThreshold(0);
+    }
+}
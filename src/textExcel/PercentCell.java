@@ -20,7 +20,7 @@ public class PercentCell extends RealCell {
      * @return text for spreadsheet cell display, must be exactly length 10
      */
     @Override
-    public String abbreviatedCellText() {
+    protected String abbreviate() {
         return (rawInput.split("\\.")[0] + "%         ").substring(0, 10);
     }
     
@@ -0,0 +1,575 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.Arrays;
+
+/**
+ * Maintained aggregates over the numeric cells of a spreadsheet, for answering range functions quickly
+ *
+ * Each column that holds a number gets a segment tree of sums and counts over its rows. Updating a cell
+ * is O(log rows), and summing or counting a rectangle is O(columns * log rows) instead of visiting every
+ * cell in it. A cell only counts if it is a RealCell that isn't an erroring formula, so comparing the
+ * count of a range to its area tells whether every cell in it is a valid operand.
+ *
+ * Every node is recomputed from its children rather than adjusted by deltas, so values never drift no
+ * matter how many times a cell is updated. Column trees start small and double as higher rows are used.
+ *
+ * Minimums and maximums, and the sums of squared deviations from the mean that standard deviations need,
+ * are kept in the same trees, but only once a range function has asked for them from that column, since
+ * most sheets never need them. The first query builds them from the leaves in O(rows). Queries from
+ * several threads at once only read, so whatever they need is built beforehand with {@link #prepare}.
+ * Medians use an order statistic structure instead: every block of 1024 rows keeps its values sorted,
+ * so the k-th smallest value of a range is found by narrowing down binary searches in the blocks it
+ * covers, and only the rows of partly covered blocks are visited one by one.
+ */
+public class RangeIndex {
+    private static final int BLOCK_SHIFT = 10;
+    private static final int BLOCK_ROWS = 1 << BLOCK_SHIFT;
+    
+    private final ColumnTree[] columns;
+    
+    public RangeIndex(int columns) {
+        this.columns = new ColumnTree[columns];
+    }
+    
+    /**
+     * Records the current value of a cell, call whenever a cell is set or a formula is recalculated
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param cell the cell now at {@code row}, {@code col}
+     */
+    public void update(int row, int col, Cell cell) {
+        if (Expression.isValidOperand(cell)) set(row, col, ((RealCell) cell).getDoubleValue(), 1);
+        else set(row, col, 0, 0);
+    }
+    
+    /**
+     * Records a number for a cell without needing the cell itself, for cells that aren't materialized
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param value the value of the number at {@code row}, {@code col}
+     */
+    public void update(int row, int col, double value) {
+        set(row, col, value, 1);
+    }
+    
+    /**
+     * Helper method to store the aggregates of one cell
+     * @param row the row of the cell
+     * @param col the column of the cell
+     * @param value the value to add to sums
+     * @param count 1 if the cell is a valid operand, 0 otherwise
+     */
+    private void set(int row, int col, double value, int count) {
+        ColumnTree tree = columns[col];
+        if (count == 0 && (tree == null || row >= tree.capacity)) return;  // nothing was ever recorded there
+        if (tree == null) tree = columns[col] = new ColumnTree();
+        
+        tree.set(row, value, count);
+    }
+    
+    /**
+     * Forgets every recorded value
+     */
+    public void clear() {
+        Arrays.fill(columns, null);
+    }
+    
+    /**
+     * Builds whatever a range function needs from the columns of a range and isn't kept yet
+     * @param aggregate the range function
+     * @param range the range it reads, must be within the spreadsheet
+     */
+    public void prepare(Expression.RangeFunction.Aggregate aggregate, CellRange range) {
+        for (int col = range.getLeft(); col <= range.getRight(); col++) {
+            if (columns[col] != null) columns[col].prepare(aggregate);
+        }
+    }
+    
+    /**
+     * @param range the range to sum, must be within the spreadsheet
+     * @return the sum of every valid numeric cell in {@code range}
+     */
+    public double sum(CellRange range) {
+        double total = 0;
+        for (int col = range.getLeft(); col <= range.getRight(); col++) {
+            if (columns[col] != null) total += columns[col].sum(range.getTop(), range.getBottom());
+        }
+        return total;
+    }
+    
+    /**
+     * @param range the range to count, must be within the spreadsheet
+     * @return the number of valid numeric cells in {@code range}
+     */
+    public long count(CellRange range) {
+        long total = 0;
+        for (int col = range.getLeft(); col <= range.getRight(); col++) {
+            if (columns[col] != null) total += columns[col].count(range.getTop(), range.getBottom());
+        }
+        return total;
+    }
+    
+    /**
+     * @param range the range to search, must be within the spreadsheet
+     * @return the smallest valid numeric cell in {@code range}, or positive infinity if there is none
+     */
+    public double min(CellRange range) {
+        double min = Double.POSITIVE_INFINITY;
+        for (int col = range.getLeft(); col <= range.getRight(); col++) {
+            if (columns[col] != null) min = Math.min(min, columns[col].min(range.getTop(), range.getBottom()));
+        }
+        return min;
+    }
+    
+    /**
+     * @param range the range to search, must be within the spreadsheet
+     * @return the largest valid numeric cell in {@code range}, or negative infinity if there is none
+     */
+    public double max(CellRange range) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int col = range.getLeft(); col <= range.getRight(); col++) {
+            if (columns[col] != null) max = Math.max(max, columns[col].max(range.getTop(), range.getBottom()));
+        }
+        return max;
+    }
+    
+    /**
+     * @param range the range to measure, must be within the spreadsheet
+     * @return the sample standard deviation of the valid numeric cells in {@code range}, NaN if there are fewer than two
+     */
+    public double standardDeviation(CellRange range) {
+        // count, sum and sum of squared deviations, merged column by column
+        double[] totals = new double[3];
+        for (int col = range.getLeft(); col <= range.getRight(); col++) {
+            if (columns[col] != null) columns[col].addDeviations(range.getTop(), range.getBottom(), totals);
+        }
+        return totals[0] < 2 ? Double.NaN : Math.sqrt(totals[2] / (totals[0] - 1));
+    }
+    
+    /**
+     * @param range the range to search, must be within the spreadsheet
+     * @return the median of the valid numeric cells in {@code range}, NaN if there are none
+     */
+    public double median(CellRange range) {
+        Selection selection = new Selection();
+        for (int col = range.getLeft(); col <= range.getRight(); col++) {
+            if (columns[col] != null) columns[col].addWindows(range.getTop(), range.getBottom(), selection);
+        }
+        selection.finish();
+        
+        long count = selection.size();
+        if (count == 0) return Double.NaN;
+        if (count % 2 == 1) return selection.select(count / 2);
+        return (selection.select(count / 2 - 1) + selection.select(count / 2)) / 2;
+    }
+    
+    /**
+     * Helper method to merge the sums of squared deviations from the mean of two sets of numbers
+     * @return the sum of squared deviations from the mean of both sets together
+     */
+    private static double mergeDeviations(double deviationsA, double sumA, double countA,
+                                          double deviationsB, double sumB, double countB) {
+        if (countA == 0) return deviationsB;
+        if (countB == 0) return deviationsA;
+        double delta = sumB / countB - sumA / countA;
+        return deviationsA + deviationsB + delta * delta * countA * countB / (countA + countB);
+    }
+    
+    /**
+     * An iterative segment tree over one column, leaves are rows and live at index capacity + row
+     */
+    private static class ColumnTree {
+        private int capacity = 64;
+        private double[] sums = new double[2 * capacity];
+        private int[] counts = new int[2 * capacity];
+        // only kept once a MIN or MAX has read the column
+        private double[] mins;
+        private double[] maxes;
+        // sums of squared deviations from the mean, only kept once a STDEV has read the column
+        private double[] deviations;
+        // the values of each block of rows in sorted order, only kept once a MEDIAN has read the column
+        private double[][] blocks;
+        private int[] blockSizes;
+        
+        private void set(int row, double value, int count) {
+            while (row >= capacity) grow();
+            
+            int node = capacity + row;
+            if (blocks != null) {
+                if (counts[node] == 1) removeFromBlock(row >>> BLOCK_SHIFT, sums[node]);
+                if (count == 1) addToBlock(row >>> BLOCK_SHIFT, value);
+            }
+            sums[node] = value;
+            counts[node] = count;
+            if (mins != null) {
+                mins[node] = count == 1 ? value : Double.POSITIVE_INFINITY;
+                maxes[node] = count == 1 ? value : Double.NEGATIVE_INFINITY;
+            }
+            for (node >>= 1; node > 0; node >>= 1) pull(node);
+        }
+        
+        /**
+         * Recomputes a node from its two children
+         * @param node the index of an internal node
+         */
+        private void pull(int node) {
+            int left = 2 * node;
+            int right = left + 1;
+            if (deviations != null) {
+                deviations[node] = mergeDeviations(deviations[left], sums[left], counts[left],
+                        deviations[right], sums[right], counts[right]);
+            }
+            sums[node] = sums[left] + sums[right];
+            counts[node] = counts[left] + counts[right];
+            if (mins != null) {
+                mins[node] = Math.min(mins[left], mins[right]);
+                maxes[node] = Math.max(maxes[left], maxes[right]);
+            }
+        }
+        
+        /**
+         * Builds whatever a range function needs from this column and isn't kept yet
+         * @param aggregate the range function
+         */
+        private void prepare(Expression.RangeFunction.Aggregate aggregate) {
+            switch (aggregate) {
+                case MIN:
+                case MAX:
+                    if (mins == null) buildExtremes();
+                    break;
+                case STDEV:
+                    if (deviations == null) buildDeviations();
+                    break;
+                case MEDIAN:
+                    if (blocks == null) buildBlocks();
+                    break;
+                default:
+                    // sums and counts are always kept
+            }
+        }
+        
+        private double min(int top, int bottom) {
+            if (mins == null) buildExtremes();
+            double min = Double.POSITIVE_INFINITY;
+            for (int low = capacity + top, high = capacity + Math.min(bottom, capacity - 1) + 1; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) min = Math.min(min, mins[low++]);
+                if ((high & 1) == 1) min = Math.min(min, mins[--high]);
+            }
+            return min;
+        }
+        
+        private double max(int top, int bottom) {
+            if (maxes == null) buildExtremes();
+            double max = Double.NEGATIVE_INFINITY;
+            for (int low = capacity + top, high = capacity + Math.min(bottom, capacity - 1) + 1; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) max = Math.max(max, maxes[low++]);
+                if ((high & 1) == 1) max = Math.max(max, maxes[--high]);
+            }
+            return max;
+        }
+        
+        /**
+         * Merges the count, sum and sum of squared deviations of some rows into running totals
+         * @param top the first row
+         * @param bottom the last row
+         * @param totals the count, sum and sum of squared deviations so far, updated in place
+         */
+        private void addDeviations(int top, int bottom, double[] totals) {
+            if (deviations == null) buildDeviations();
+            for (int low = capacity + top, high = capacity + Math.min(bottom, capacity - 1) + 1; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) addNode(low++, totals);
+                if ((high & 1) == 1) addNode(--high, totals);
+            }
+        }
+        
+        private void addNode(int node, double[] totals) {
+            totals[2] = mergeDeviations(totals[2], totals[1], totals[0], deviations[node], sums[node], counts[node]);
+            totals[0] += counts[node];
+            totals[1] += sums[node];
+        }
+        
+        /**
+         * Adds the sorted values of some rows to a selection, whole blocks as they are and the rest one by one
+         * @param top the first row
+         * @param bottom the last row
+         * @param selection the selection to add to
+         */
+        private void addWindows(int top, int bottom, Selection selection) {
+            if (blocks == null) buildBlocks();
+            bottom = Math.min(bottom, capacity - 1);
+            
+            for (int block = top >>> BLOCK_SHIFT; block <= bottom >>> BLOCK_SHIFT; block++) {
+                int first = block << BLOCK_SHIFT;
+                int last = first + BLOCK_ROWS - 1;
+                if (first >= top && last <= bottom) {
+                    if (blockSizes[block] > 0) selection.addWindow(blocks[block], blockSizes[block]);
+                    continue;
+                }
+                for (int row = Math.max(first, top); row <= Math.min(last, bottom); row++) {
+                    if (counts[capacity + row] == 1) selection.addValue(sums[capacity + row]);
+                }
+            }
+        }
+        
+        /**
+         * Builds the minimums and maximums from the leaves
+         * Like the other builders it fills new arrays and only keeps them once they are whole.
+         */
+        private void buildExtremes() {
+            double[] newMins = new double[2 * capacity];
+            double[] newMaxes = new double[2 * capacity];
+            for (int node = capacity; node < 2 * capacity; node++) {
+                newMins[node] = counts[node] == 1 ? sums[node] : Double.POSITIVE_INFINITY;
+                newMaxes[node] = counts[node] == 1 ? sums[node] : Double.NEGATIVE_INFINITY;
+            }
+            for (int node = capacity - 1; node > 0; node--) {
+                newMins[node] = Math.min(newMins[2 * node], newMins[2 * node + 1]);
+                newMaxes[node] = Math.max(newMaxes[2 * node], newMaxes[2 * node + 1]);
+            }
+            mins = newMins;
+            maxes = newMaxes;
+        }
+        
+        /**
+         * Builds the sums of squared deviations from the leaves, which have none
+         */
+        private void buildDeviations() {
+            double[] newDeviations = new double[2 * capacity];
+            for (int node = capacity - 1; node > 0; node--) {
+                int left = 2 * node;
+                int right = left + 1;
+                newDeviations[node] = mergeDeviations(newDeviations[left], sums[left], counts[left],
+                        newDeviations[right], sums[right], counts[right]);
+            }
+            deviations = newDeviations;
+        }
+        
+        /**
+         * Builds the sorted blocks from the leaves
+         */
+        private void buildBlocks() {
+            int numBlocks = (capacity + BLOCK_ROWS - 1) >>> BLOCK_SHIFT;
+            double[][] newBlocks = new double[numBlocks][];
+            int[] newBlockSizes = new int[numBlocks];
+            for (int row = 0; row < capacity; row++) {
+                if (counts[capacity + row] == 1) {
+                    int block = row >>> BLOCK_SHIFT;
+                    if (newBlocks[block] == null) newBlocks[block] = new double[16];
+                    if (newBlockSizes[block] == newBlocks[block].length) {
+                        newBlocks[block] = Arrays.copyOf(newBlocks[block], newBlockSizes[block] * 2);
+                    }
+                    newBlocks[block][newBlockSizes[block]++] = sums[capacity + row];
+                }
+            }
+            for (int block = 0; block < numBlocks; block++) {
+                if (newBlocks[block] != null) Arrays.sort(newBlocks[block], 0, newBlockSizes[block]);
+            }
+            blockSizes = newBlockSizes;
+            blocks = newBlocks;
+        }
+        
+        private void addToBlock(int block, double value) {
+            if (blocks[block] == null) blocks[block] = new double[16];
+            if (blockSizes[block] == blocks[block].length) blocks[block] = Arrays.copyOf(blocks[block], blockSizes[block] * 2);
+            
+            double[] values = blocks[block];
+            int at = lowerBound(values, 0, blockSizes[block], value);
+            System.arraycopy(values, at, values, at + 1, blockSizes[block] - at);
+            values[at] = value;
+            blockSizes[block]++;
+        }
+        
+        private void removeFromBlock(int block, double value) {
+            double[] values = blocks[block];
+            int at = lowerBound(values, 0, blockSizes[block], value);
+            System.arraycopy(values, at + 1, values, at, blockSizes[block] - at - 1);
+            blockSizes[block]--;
+        }
+        
+        private double sum(int top, int bottom) {
+            double total = 0;
+            for (int low = capacity + top, high = capacity + Math.min(bottom, capacity - 1) + 1; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) total += sums[low++];
+                if ((high & 1) == 1) total += sums[--high];
+            }
+            return total;
+        }
+        
+        private int count(int top, int bottom) {
+            int total = 0;
+            for (int low = capacity + top, high = capacity + Math.min(bottom, capacity - 1) + 1; low < high; low >>= 1, high >>= 1) {
+                if ((low & 1) == 1) total += counts[low++];
+                if ((high & 1) == 1) total += counts[--high];
+            }
+            return total;
+        }
+        
+        /**
+         * Doubles the number of leaves, the old tree becomes the left half of the new one
+         */
+        private void grow() {
+            int newCapacity = capacity * 2;
+            double[] newSums = new double[2 * newCapacity];
+            int[] newCounts = new int[2 * newCapacity];
+            
+            System.arraycopy(sums, capacity, newSums, newCapacity, capacity);
+            System.arraycopy(counts, capacity, newCounts, newCapacity, capacity);
+            if (mins != null) {
+                double[] newMins = new double[2 * newCapacity];
+                double[] newMaxes = new double[2 * newCapacity];
+                Arrays.fill(newMins, newCapacity, 2 * newCapacity, Double.POSITIVE_INFINITY);
+                Arrays.fill(newMaxes, newCapacity, 2 * newCapacity, Double.NEGATIVE_INFINITY);
+                System.arraycopy(mins, capacity, newMins, newCapacity, capacity);
+                System.arraycopy(maxes, capacity, newMaxes, newCapacity, capacity);
+                mins = newMins;
+                maxes = newMaxes;
+            }
+            // leaves have no deviation from their own mean, so only the internal nodes need rebuilding
+            if (deviations != null) deviations = new double[2 * newCapacity];
+            if (blocks != null) {
+                int numBlocks = (newCapacity + BLOCK_ROWS - 1) >>> BLOCK_SHIFT;
+                blocks = Arrays.copyOf(blocks, numBlocks);
+                blockSizes = Arrays.copyOf(blockSizes, numBlocks);
+            }
+            capacity = newCapacity;
+            sums = newSums;
+            counts = newCounts;
+            
+            for (int node = capacity - 1; node > 0; node--) pull(node);
+        }
+    }
+    
+    /**
+     * @param values sorted values
+     * @param from the first index to search
+     * @param to one past the last index to search
+     * @param value the value to look for
+     * @return the first index in {@code from} to {@code to} whose value isn't less than {@code value}
+     */
+    private static int lowerBound(double[] values, int from, int to, double value) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (Double.compare(values[middle], value) < 0) from = middle + 1;
+            else to = middle;
+        }
+        return from;
+    }
+    
+    /**
+     * @param values sorted values
+     * @param from the first index to search
+     * @param to one past the last index to search
+     * @param value the value to look for
+     * @return the first index in {@code from} to {@code to} whose value is greater than {@code value}
+     */
+    private static int upperBound(double[] values, int from, int to, double value) {
+        while (from < to) {
+            int middle = (from + to) >>> 1;
+            if (Double.compare(values[middle], value) <= 0) from = middle + 1;
+            else to = middle;
+        }
+        return from;
+    }
+    
+    /**
+     * Finds the k-th smallest of the values in a set of sorted windows without merging them
+     *
+     * Each step picks the weighted median of the middle values of the windows as a pivot and counts what is
+     * below it with a binary search in every window. Every window is then cut down to the side of the pivot
+     * the k-th value is on, which drops at least a quarter of the values that are left.
+     */
+    private static class Selection {
+        private double[][] windows = new double[16][];
+        private int[] sizes = new int[16];
+        private int numWindows;
+        // values from rows of partly covered blocks, sorted into one more window at the end
+        private double[] loose = new double[16];
+        private int numLoose;
+        private long size;
+        
+        private void addWindow(double[] values, int count) {
+            if (numWindows == windows.length) {
+                windows = Arrays.copyOf(windows, numWindows * 2);
+                sizes = Arrays.copyOf(sizes, numWindows * 2);
+            }
+            windows[numWindows] = values;
+            sizes[numWindows++] = count;
+            size += count;
+        }
+        
+        private void addValue(double value) {
+            if (numLoose == loose.length) loose = Arrays.copyOf(loose, numLoose * 2);
+            loose[numLoose++] = value;
+        }
+        
+        /**
+         * Sorts the loose values into a window, call once everything is added
+         */
+        private void finish() {
+            if (numLoose == 0) return;
+            Arrays.sort(loose, 0, numLoose);
+            addWindow(loose, numLoose);
+        }
+        
+        private long size() {
+            return size;
+        }
+        
+        /**
+         * @param k the rank of the value, 0 for the smallest
+         * @return the k-th smallest value
+         */
+        private double select(long k) {
+            int[] low = new int[numWindows];
+            int[] high = Arrays.copyOf(sizes, numWindows);
+            Integer[] order = new Integer[numWindows];
+            double[] middles = new double[numWindows];
+            
+            while (true) {
+                // weighted median of the middles of the windows that still hold something
+                int count = 0;
+                long remaining = 0;
+                for (int i = 0; i < numWindows; i++) {
+                    if (low[i] == high[i]) continue;
+                    middles[i] = windows[i][(low[i] + high[i]) >>> 1];
+                    order[count++] = i;
+                    remaining += high[i] - low[i];
+                }
+                Arrays.sort(order, 0, count, (a, b) -> Double.compare(middles[a], middles[b]));
+                double pivot = middles[order[0]];
+                long weight = 0;
+                for (int j = 0; j < count; j++) {
+                    int i = order[j];
+                    weight += high[i] - low[i];
+                    if (2 * weight >= remaining) {
+                        pivot = middles[i];
+                        break;
+                    }
+                }
+                
+                long below = 0;
+                long equal = 0;
+                int[] lower = new int[numWindows];
+                int[] upper = new int[numWindows];
+                for (int i = 0; i < numWindows; i++) {
+                    lower[i] = lowerBound(windows[i], low[i], high[i], pivot);
+                    upper[i] = upperBound(windows[i], lower[i], high[i], pivot);
+                    below += lower[i] - low[i];
+                    equal += upper[i] - lower[i];
+                }
+                
+                if (k < below) {
+                    high = lower;
+                } else if (k < below + equal) {
+                    return pivot;
+                } else {
+                    k -= below + equal;
+                    low = upper;
+                }
+            }
+        }
+    }
+}
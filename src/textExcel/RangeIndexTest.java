@@ -0,0 +1,232 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class RangeIndexTest {
+    private static final int ROWS = 3000;
+    private static final int COLUMNS = 6;
+    
+    private RangeIndex index;
+    // what the index was told, NaN where a cell holds no number
+    private double[][] values;
+    private Random random;
+    
+    @Before
+    public void createIndex() {
+        index = new RangeIndex(COLUMNS);
+        values = new double[ROWS][COLUMNS];
+        for (double[] row : values) Arrays.fill(row, Double.NaN);
+        random = new Random(12);
+    }
+    
+    /**
+     * Helper method to set or empty random cells, both in the index and in the plain array
+     * @param changes the number of cells to change
+     */
+    void randomize(int changes) {
+        for (int i = 0; i < changes; i++) {
+            int row = random.nextInt(ROWS);
+            int col = random.nextInt(COLUMNS);
+            if (random.nextInt(4) == 0) {
+                index.update(row, col, EmptyCell.INSTANCE);
+                values[row][col] = Double.NaN;
+            } else {
+                double value = random.nextInt(2000) / 8.0 - 100;
+                index.update(row, col, value);
+                values[row][col] = value;
+            }
+        }
+    }
+    
+    /**
+     * @return a random range, mostly small but sometimes spanning the whole index
+     */
+    CellRange randomRange() {
+        int top = random.nextInt(ROWS);
+        int left = random.nextInt(COLUMNS);
+        int height = random.nextBoolean() ? random.nextInt(10) + 1 : random.nextInt(ROWS - top) + 1;
+        int bottom = Math.min(ROWS - 1, top + height - 1);
+        return new CellRange(top, left, bottom, left + random.nextInt(COLUMNS - left));
+    }
+    
+    @Test
+    public void testSumAndCount() {
+        for (int round = 0; round < 50; round++) {
+            randomize(200);
+            for (int query = 0; query < 20; query++) {
+                CellRange range = randomRange();
+                double sum = 0;
+                long count = 0;
+                for (int row = range.getTop(); row <= range.getBottom(); row++) {
+                    for (int col = range.getLeft(); col <= range.getRight(); col++) {
+                        if (Double.isNaN(values[row][col])) continue;
+                        sum += values[row][col];
+                        count++;
+                    }
+                }
+                // every value is a multiple of 1/8, so the sums are exact
+                assertEquals(sum, index.sum(range), 0);
+                assertEquals(count, index.count(range));
+            }
+        }
+    }
+    
+    @Test
+    public void testMinMaxDeviationAndMedian() {
+        for (int round = 0; round < 30; round++) {
+            randomize(200);
+            for (int query = 0; query < 20; query++) {
+                CellRange range = randomRange();
+                double[] found = new double[(int) range.getArea()];
+                int count = 0;
+                for (int row = range.getTop(); row <= range.getBottom(); row++) {
+                    for (int col = range.getLeft(); col <= range.getRight(); col++) {
+                        if (!Double.isNaN(values[row][col])) found[count++] = values[row][col];
+                    }
+                }
+                Arrays.sort(found, 0, count);
+                double sum = 0;
+                for (int i = 0; i < count; i++) sum += found[i];
+                double deviations = 0;
+                for (int i = 0; i < count; i++) deviations += (found[i] - sum / count) * (found[i] - sum / count);
+                
+                assertEquals(count == 0 ? Double.POSITIVE_INFINITY : found[0], index.min(range), 0);
+                assertEquals(count == 0 ? Double.NEGATIVE_INFINITY : found[count - 1], index.max(range), 0);
+                if (count < 2) assertTrue(Double.isNaN(index.standardDeviation(range)));
+                else assertEquals(Math.sqrt(deviations / (count - 1)), index.standardDeviation(range), 1e-9);
+                if (count == 0) assertTrue(Double.isNaN(index.median(range)));
+                else assertEquals(count % 2 == 1 ? found[count / 2] : (found[count / 2 - 1] + found[count / 2]) / 2, index.median(range), 0);
+            }
+        }
+    }
+    
+    @Test
+    public void testPreparedStructuresFollowUpdates() {
+        randomize(3000);
+        CellRange all = new CellRange(0, 0, ROWS - 1, COLUMNS - 1);
+        for (Expression.RangeFunction.Aggregate aggregate : Expression.RangeFunction.Aggregate.values()) index.prepare(aggregate, all);
+        // updates after building, including ones that grow the trees, are kept in every structure
+        index.update(ROWS - 1, 0, -1000);
+        index.update(0, 1, 1000);
+        values[ROWS - 1][0] = -1000;
+        values[0][1] = 1000;
+        assertEquals(-1000, index.min(all), 0);
+        assertEquals(1000, index.max(all), 0);
+        
+        RangeIndex fresh = new RangeIndex(COLUMNS);
+        for (int row = 0; row < ROWS; row++) {
+            for (int col = 0; col < COLUMNS; col++) {
+                if (!Double.isNaN(values[row][col])) fresh.update(row, col, values[row][col]);
+            }
+        }
+        assertEquals(fresh.standardDeviation(all), index.standardDeviation(all), 1e-9);
+        assertEquals(fresh.median(all), index.median(all), 0);
+    }
+    
+    @Test
+    public void testClear() {
+        randomize(500);
+        index.clear();
+        CellRange all = new CellRange(0, 0, ROWS - 1, COLUMNS - 1);
+        assertEquals(0, index.sum(all), 0);
+        assertEquals(0, index.count(all));
+    }
+    
+    @Test
+    public void testSpreadsheetSumAndAverage() {
+        Spreadsheet sheet = new Spreadsheet(200, 4);
+        for (int row = 1; row <= 200; row++) sheet.processCommand("A" + row + " = " + row);
+        sheet.processCommand("B1 = \"text\"");
+        sheet.processCommand("D1 = ( SUM A1-B200 )");
+        sheet.processCommand("C1 = ( SUM A1-A200 )");
+        sheet.processCommand("C2 = ( AVG A1-A200 )");
+        sheet.processCommand("C3 = ( SUM A1-A8 )");
+        assertEquals(20100, ((FormulaCell) sheet.getCell("C1")).getDoubleValue(), 0);
+        assertEquals(100.5, ((FormulaCell) sheet.getCell("C2")).getDoubleValue(), 0);
+        assertEquals(36, ((FormulaCell) sheet.getCell("C3")).getDoubleValue(), 0);
+        assertTrue("every cell of a summed range has to be a number", ((FormulaCell) sheet.getCell("D1")).hasError());
+        
+        // the index follows edits, including formulas inside the range
+        sheet.processCommand("A100 = ( C3 * 0 )");
+        assertEquals(20000, ((FormulaCell) sheet.getCell("C1")).getDoubleValue(), 0);
+        sheet.processCommand("A200 = 0");
+        assertEquals(19800, ((FormulaCell) sheet.getCell("C1")).getDoubleValue(), 0);
+        sheet.processCommand("clear A200");
+        assertTrue(((FormulaCell) sheet.getCell("C1")).hasError());
+    }
+    
+    @Test
+    public void testAggregatesUnderAndOverIndexedArea() {
+        // 8 by 8 is the largest range visited cell by cell, 9 by 8 is answered by the index
+        Spreadsheet sheet = new Spreadsheet(200, 10);
+        for (int row = 1; row <= 9; row++) {
+            for (int col = 0; col < 8; col++) sheet.processCommand((char) ('A' + col) + "" + row + " = " + (row * 8 + col) % 13);
+        }
+        String[] functions = {"SUM", "AVG", "MIN", "MAX", "COUNT", "STDEV", "MEDIAN"};
+        for (String range : new String[] {"A1-H8", "A1-H9"}) {
+            for (int i = 0; i < functions.length; i++) sheet.processCommand("J" + (i + 1) + " = ( " + functions[i] + " " + range + " )");
+            
+            int rows = range.equals("A1-H8") ? 8 : 9;
+            double[] cells = new double[rows * 8];
+            for (int row = 1; row <= rows; row++) {
+                for (int col = 0; col < 8; col++) cells[(row - 1) * 8 + col] = (row * 8 + col) % 13;
+            }
+            Arrays.sort(cells);
+            double sum = 0;
+            for (double cell : cells) sum += cell;
+            double deviations = 0;
+            for (double cell : cells) deviations += (cell - sum / cells.length) * (cell - sum / cells.length);
+            double[] expected = {sum, sum / cells.length, cells[0], cells[cells.length - 1], cells.length,
+                    Math.sqrt(deviations / (cells.length - 1)), (cells[cells.length / 2 - 1] + cells[cells.length / 2]) / 2};
+            for (int i = 0; i < functions.length; i++) {
+                assertEquals(functions[i] + " " + range, expected[i], ((FormulaCell) sheet.getCell("J" + (i + 1))).getDoubleValue(), 1e-9);
+            }
+        }
+        
+        // COUNT skips text, every other function is an error over it
+        sheet.processCommand("A1 = \"text\"");
+        assertEquals(71, ((FormulaCell) sheet.getCell("J5")).getDoubleValue(), 0);
+        assertTrue(((FormulaCell) sheet.getCell("J3")).hasError());
+        assertTrue(((FormulaCell) sheet.getCell("J7")).hasError());
+    }
+    
+    @Test
+    public void testParallelLevelOfRangeFunctions() {
+        // one level of formulas over the same column, each range over the indexed area, evaluated across threads
+        int rows = 3000;
+        Spreadsheet parallel = new Spreadsheet(rows, 6);
+        Spreadsheet serial = new Spreadsheet(rows, 6);
+        parallel.setParallelThreshold(1);
+        serial.setParallelThreshold(Integer.MAX_VALUE);
+        
+        String[] functions = {"MIN", "MAX", "STDEV", "MEDIAN"};
+        for (Spreadsheet sheet : new Spreadsheet[] {parallel, serial}) {
+            for (int row = 1; row <= rows; row++) sheet.processCommand("A" + row + " = " + random.nextInt(1000));
+            ArrayList<String> formulas = new ArrayList<>();
+            for (int row = 1; row <= rows; row++) {
+                int top = (row * 7) % (rows - 100) + 1;
+                String function = functions[row % functions.length];
+                formulas.add((char) ('B' + row % 4) + "" + row + " = ( " + function + " A" + top + "-A" + (top + 99) + " )");
+            }
+            // a batch sets every formula first, so they are all recalculated as one level
+            sheet.processBatch(formulas, output -> { });
+            random = new Random(12);
+        }
+        
+        for (int row = 0; row < rows; row++) {
+            Cell want = serial.getCell(row, 1 + (row + 1) % 4);
+            Cell got = parallel.getCell(row, 1 + (row + 1) % 4);
+            assertEquals(((FormulaCell) want).getDoubleValue(), ((FormulaCell) got).getDoubleValue(), 0);
+        }
+    }
+}
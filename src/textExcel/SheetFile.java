@@ -0,0 +1,286 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The binary file format for saved spreadsheets, read through a memory mapping
+ *
+ * A file is a header, then one fixed size record per populated cell sorted by packed location, then a
+ * string table. Because records have a fixed size and are sorted, any cell can be found by binary search
+ * straight from the mapped file, so opening a file doesn't have to read the cells in it.
+ *
+ * Header, 24 bytes: magic, version, rows, columns, number of records, number of strings, all ints.
+ * Record, 24 bytes: packed location (long), type (byte), 3 unused bytes, string index or -1 (int),
+ * number (double). Values and percents only keep their input in the string table when it can't be rebuilt
+ * from the number, percents store the number before the percent sign. Text and formulas keep their input.
+ * String table: an int offset from the start of the file for every string, then the strings, each an int
+ * byte length followed by UTF-8 bytes.
+ */
+public final class SheetFile {
+    public static final byte VALUE = 1;
+    public static final byte PERCENT = 2;
+    public static final byte TEXT = 3;
+    public static final byte FORMULA = 4;
+
+    private static final int MAGIC = 0x54584C53;  // "TXLS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final int RECORD_SIZE = 24;
+    private static final int NO_STRING = -1;
+
+    private final ByteBuffer buffer;
+    private final int numRows;
+    private final int numCols;
+    private final int numRecords;
+    private final int numStrings;
+    private final int stringOffsets;
+
+    private SheetFile(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) throw new IOException("not a TextExcel sheet file");
+        if (buffer.getInt(4) != VERSION) throw new IOException("unsupported sheet file version " + buffer.getInt(4));
+
+        numRows = buffer.getInt(8);
+        numCols = buffer.getInt(12);
+        numRecords = buffer.getInt(16);
+        numStrings = buffer.getInt(20);
+        stringOffsets = HEADER_SIZE + numRecords * RECORD_SIZE;
+        if (numRecords < 0 || numStrings < 0 || (long) stringOffsets + 4L * numStrings > buffer.capacity()) {
+            throw new IOException("sheet file is truncated");
+        }
+    }
+
+    /**
+     * Maps a sheet file into memory, only the header is read right away
+     * @param path the file to open
+     * @return the opened file
+     * @throws IOException if the file can't be read or isn't a sheet file
+     */
+    public static SheetFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException("sheet file is larger than 2GB");
+            // the mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new SheetFile(mapped);
+        }
+    }
+
+    /**
+     * Writes the cells of a spreadsheet to a sheet file
+     *
+     * The cells may be read lazily from the very file being replaced, so they are written to a temporary
+     * file next to it that is then moved over it. A failed write leaves the old file as it was.
+     * @param path the file to write, replaced if it exists
+     * @param rows the number of rows of the spreadsheet
+     * @param columns the number of columns of the spreadsheet
+     * @param cells the cells to write
+     * @throws IOException if writing fails
+     */
+    public static void write(Path path, int rows, int columns, CellStorage cells) throws IOException {
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            writeRecords(temporary, rows, columns, cells);
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    /**
+     * Helper method to write the header, records and strings of a sheet file
+     * @param path the file to write, replaced if it exists
+     * @param rows the number of rows of the spreadsheet
+     * @param columns the number of columns of the spreadsheet
+     * @param cells the cells to write
+     * @throws IOException if writing fails
+     */
+    private static void writeRecords(Path path, int rows, int columns, CellStorage cells) throws IOException {
+        long[] keys = collectKeys(cells);
+        ArrayList<byte[]> strings = new ArrayList<>();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            out.writeInt(keys.length);
+            // the number of strings is only known once every record is written, so records go out first
+            ByteBuffer records = ByteBuffer.allocate(keys.length * RECORD_SIZE);
+            for (long key : keys) {
+                Cell cell = cells.get(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key));
+                writeRecord(records, key, cell, strings);
+            }
+            out.writeInt(strings.size());
+            out.write(records.array());
+
+            int offset = HEADER_SIZE + records.capacity() + 4 * strings.size();
+            for (byte[] string : strings) {
+                out.writeInt(offset);
+                offset += 4 + string.length;
+            }
+            for (byte[] string : strings) {
+                out.writeInt(string.length);
+                out.write(string);
+            }
+        }
+    }
+
+    /**
+     * Helper method to list the populated locations of a storage in file order
+     * @param cells the storage
+     * @return the sorted packed locations of every populated cell
+     */
+    private static long[] collectKeys(CellStorage cells) {
+        long[][] keys = {new long[64]};
+        int[] size = new int[1];
+        cells.forEach((row, col, cell) -> {
+            if (size[0] == keys[0].length) keys[0] = Arrays.copyOf(keys[0], size[0] * 2);
+            keys[0][size[0]++] = SpreadsheetLocation.pack(row, col);
+        });
+        long[] sorted = Arrays.copyOf(keys[0], size[0]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Helper method to encode one cell
+     * @param records where to put the record
+     * @param key the packed location of the cell
+     * @param cell the cell
+     * @param strings the string table, added to if the cell needs a string
+     */
+    private static void writeRecord(ByteBuffer records, long key, Cell cell, ArrayList<byte[]> strings) {
+        String input = ((BaseCell) cell).rawInput;
+        byte type;
+        double number = 0;
+        if (cell instanceof FormulaCell) {
+            type = FORMULA;
+        } else if (cell instanceof PercentCell) {
+            type = PERCENT;
+            number = Double.parseDouble(input.substring(0, input.length() - 1));
+            if (input.equals(ColumnarCellStorage.format(number) + "%")) input = null;
+        } else if (cell instanceof ValueCell) {
+            type = VALUE;
+            number = Double.parseDouble(input);
+            if (input.equals(ColumnarCellStorage.format(number))) input = null;
+        } else type = TEXT;
+
+        records.putLong(key);
+        records.put(type);
+        records.put((byte) 0).put((byte) 0).put((byte) 0);
+        if (input == null) {
+            records.putInt(NO_STRING);
+        } else {
+            records.putInt(strings.size());
+            strings.add(input.getBytes(StandardCharsets.UTF_8));
+        }
+        records.putDouble(number);
+    }
+
+    /**
+     * @return the number of rows of the saved spreadsheet
+     */
+    public int getRows() {
+        return numRows;
+    }
+
+    /**
+     * @return the number of columns of the saved spreadsheet
+     */
+    public int getCols() {
+        return numCols;
+    }
+
+    /**
+     * @return the number of cells in the file
+     */
+    public int size() {
+        return numRecords;
+    }
+
+    /**
+     * @param record the index of a record, records are sorted by packed location
+     * @return the packed location of the cell
+     */
+    public long getKey(int record) {
+        return buffer.getLong(HEADER_SIZE + record * RECORD_SIZE);
+    }
+
+    /**
+     * @param record the index of a record
+     * @return the type of the cell, VALUE, PERCENT, TEXT or FORMULA
+     */
+    public byte getType(int record) {
+        return buffer.get(HEADER_SIZE + record * RECORD_SIZE + 8);
+    }
+
+    /**
+     * @param record the index of a VALUE or PERCENT record
+     * @return the value the cell holds, a percent already divided by 100
+     */
+    public double getNumber(int record) {
+        double number = buffer.getDouble(HEADER_SIZE + record * RECORD_SIZE + 16);
+        return getType(record) == PERCENT ? number / 100.0 : number;
+    }
+
+    /**
+     * @param record the index of a record
+     * @return the input the cell was created from
+     */
+    public String getInput(int record) {
+        int string = buffer.getInt(HEADER_SIZE + record * RECORD_SIZE + 12);
+        if (string != NO_STRING) return getString(string);
+
+        String number = ColumnarCellStorage.format(buffer.getDouble(HEADER_SIZE + record * RECORD_SIZE + 16));
+        return getType(record) == PERCENT ? number + "%" : number;
+    }
+
+    /**
+     * Finds the record of a cell by binary search
+     * @param key the packed location of the cell
+     * @return the index of the record, or -1 if the cell is empty in the file
+     */
+    public int find(long key) {
+        int low = 0;
+        int high = numRecords - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleKey = getKey(middle);
+            if (middleKey < key) low = middle + 1;
+            else if (middleKey > key) high = middle - 1;
+            else return middle;
+        }
+        return -1;
+    }
+
+    /**
+     * Helper method to decode a string from the string table
+     * @param index the index of the string
+     * @return the string
+     */
+    private String getString(int index) {
+        int offset = buffer.getInt(stringOffsets + 4 * index);
+        byte[] bytes = new byte[buffer.getInt(offset)];
+        // reading through a duplicate leaves the shared position alone, so readers on other threads are safe
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + 4);
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,164 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SheetFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private Path file;
+    
+    @Before
+    public void createPath() {
+        file = folder.getRoot().toPath().resolve("sheet.bin");
+    }
+    
+    /**
+     * Helper method to check that two spreadsheets hold the same inputs and show the same grid
+     * @param expected the original spreadsheet
+     * @param actual the spreadsheet read back
+     */
+    private static void assertSameSheet(Spreadsheet expected, Spreadsheet actual) {
+        for (int row = 0; row < expected.getRows(); row++) {
+            for (int col = 0; col < expected.getCols(); col++) {
+                Cell want = expected.getCell(row, col);
+                Cell got = actual.getCell(row, col);
+                assertEquals(SpreadsheetLocation.cellName(row, col), want.getClass(), got.getClass());
+                if (!(want instanceof EmptyCell)) assertEquals(((BaseCell) want).rawInput, ((BaseCell) got).rawInput);
+            }
+        }
+        // opening doesn't recalculate, the next command that redraws does
+        assertEquals(expected.getGridText(), actual.processCommand("print"));
+    }
+    
+    @Test
+    public void testRoundTrip() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        // values whose input can't be rebuilt from the number have to keep their text
+        String[] values = {"7", "5.50", "-0", "1e3", "0.1", "-12.000", "100000000000000000000"};
+        for (int i = 0; i < values.length; i++) sheet.processCommand("A" + (i + 1) + " = " + values[i]);
+        String[] percents = {"50%", "12.50%", "0.5%", "-3%"};
+        for (int i = 0; i < percents.length; i++) sheet.processCommand("B" + (i + 1) + " = " + percents[i]);
+        sheet.processCommand("C1 = \"text, with \"quotes\" and ünïcödé\"");
+        sheet.processCommand("C2 = \"\"");
+        sheet.processCommand("D1 = ( A1 * B1 + 2 )");
+        sheet.processCommand("D2 = ( SUM A1-A3 )");
+        sheet.processCommand("D3 = ( C1 + 1 )");
+        sheet.processCommand("L20 = 1");
+        
+        sheet.save(file);
+        Spreadsheet opened = new Spreadsheet();
+        opened.open(file);
+        assertSameSheet(sheet, opened);
+        assertEquals(5.5, ((FormulaCell) opened.getCell("D1")).getDoubleValue(), 0);
+        assertTrue(((FormulaCell) opened.getCell("D3")).hasError());
+    }
+    
+    @Test
+    public void testReadsReuseCells() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 2.50");
+        sheet.processCommand("B1 = \"text\"");
+        sheet.save(file);
+        
+        MappedCellStorage cells = new MappedCellStorage(SheetFile.open(file), new TiledCellStorage());
+        Cell cell = cells.get(0, 0);
+        // the same cell comes back, along with its cached abbreviated text
+        assertSame(cell, cells.get(0, 0));
+        assertSame(cell.abbreviatedCellText(), cells.get(0, 0).abbreviatedCellText());
+        assertEquals("2.50", ((BaseCell) cell).rawInput);
+        
+        // a snapshot shares the cells already read, and neither side sees the other's writes
+        CellStorage snapshot = cells.snapshot();
+        assertSame(cell, snapshot.get(0, 0));
+        cells.set(0, 0, new ValueCell("3"));
+        assertEquals("3", cells.get(0, 0).fullCellText());
+        assertSame(cell, snapshot.get(0, 0));
+        assertSame(snapshot.get(0, 1), snapshot.get(0, 1));
+        
+        cells.clear();
+        assertTrue(cells.get(0, 1) instanceof EmptyCell);
+        assertEquals("\"text\"", snapshot.get(0, 1).fullCellText());
+    }
+    
+    @Test
+    public void testEmptySheet() throws IOException {
+        new Spreadsheet(3, 2).save(file);
+        SheetFile saved = SheetFile.open(file);
+        assertEquals(3, saved.getRows());
+        assertEquals(2, saved.getCols());
+        assertEquals(0, saved.size());
+    }
+    
+    @Test
+    public void testSaveOverTheOpenedFile() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1.50");
+        sheet.processCommand("A2 = \"kept\"");
+        sheet.processCommand("A3 = ( A1 * 2 )");
+        assertEquals("", sheet.processCommand("save " + file));
+        
+        // the cells of the opened file are still read from it while it is written again
+        Spreadsheet opened = new Spreadsheet();
+        opened.processCommand("open " + file);
+        opened.processCommand("B1 = 4");
+        assertEquals("", opened.processCommand("save " + file));
+        opened.processCommand("B2 = 5");
+        assertEquals("", opened.processCommand("save " + file));
+        assertFalse(Files.exists(file.resolveSibling("sheet.bin.tmp")));
+        
+        Spreadsheet reopened = new Spreadsheet();
+        reopened.open(file);
+        assertSameSheet(opened, reopened);
+        assertEquals("1.50", reopened.processCommand("A1"));
+        assertEquals("\"kept\"", reopened.processCommand("A2"));
+        assertEquals(3, ((FormulaCell) reopened.getCell("A3")).getDoubleValue(), 0);
+        assertEquals("5", reopened.processCommand("B2"));
+    }
+    
+    @Test
+    public void testOpenReplacesEverything() throws IOException {
+        Spreadsheet saved = new Spreadsheet();
+        saved.processCommand("A1 = 1");
+        saved.save(file);
+        
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("B5 = 2");
+        sheet.processCommand("A1 = 9");
+        sheet.processCommand("open " + file);
+        assertEquals("1", sheet.processCommand("A1"));
+        assertEquals("", sheet.processCommand("B5"));
+        assertTrue("what was there before can't be undone into", sheet.processCommand("undo").startsWith("ERROR"));
+    }
+    
+    @Test
+    public void testBadFiles() throws IOException {
+        Spreadsheet sheet = new Spreadsheet();
+        assertTrue(sheet.processCommand("open " + file).startsWith("ERROR: no such file"));
+        
+        Files.write(file, "not a sheet".getBytes("UTF-8"));
+        assertTrue(sheet.processCommand("open " + file).startsWith("ERROR"));
+        
+        // a sheet too big for the spreadsheet it is opened into
+        Spreadsheet big = new Spreadsheet(30, 12);
+        big.processCommand("A30 = 1");
+        big.save(file);
+        assertTrue(sheet.processCommand("open " + file).startsWith("ERROR"));
+        
+        Files.write(file, new byte[30]);
+        assertTrue(sheet.processCommand("open " + file).startsWith("ERROR"));
+        assertTrue(sheet.processCommand("save " + folder.getRoot().toPath().resolve("missing/x.bin")).startsWith("ERROR"));
+    }
+}
@@ -0,0 +1,39 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+/**
+ * A range of cells on another sheet of a workbook, like Sheet2!A1-B4, a single cell is a range of one
+ */
+public class SheetRange {
+    private final String sheet;
+    private final CellRange range;
+    
+    /**
+     * @param sheet the name of the sheet, matched ignoring case
+     * @param range the cells on that sheet
+     */
+    public SheetRange(String sheet, CellRange range) {
+        this.sheet = sheet;
+        this.range = range;
+    }
+    
+    /**
+     * @return the name of the sheet as it was written
+     */
+    public String getSheet() {
+        return sheet;
+    }
+    
+    public CellRange getRange() {
+        return range;
+    }
+    
+    /**
+     * @return true if the range is a single cell
+     */
+    public boolean isCell() {
+        return range.getArea() == 1;
+    }
+}
@@ -0,0 +1,152 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SnapshotTest {
+    /**
+     * Helper method to check a cell read back from a storage, columnar storage builds new cells on reads
+     * @param want the cell written, or null for an empty slot
+     * @param got the cell read
+     */
+    private static void assertCell(Cell want, Cell got) {
+        if (want == null) assertTrue(got instanceof EmptyCell);
+        else assertTrue(BaseCell.sameContent(want, got));
+    }
+    
+    /**
+     * Helper method to check that storages isolate their snapshots both ways, against a random series of writes
+     * @param cells the storage to snapshot, empty
+     */
+    private static void checkCopyOnWrite(CellStorage cells) {
+        Random random = new Random(5);
+        Cell[][] expected = new Cell[300][40];
+        ArrayList<CellStorage> snapshots = new ArrayList<>();
+        ArrayList<Cell[][]> snapshotExpected = new ArrayList<>();
+        
+        for (int round = 0; round < 8; round++) {
+            for (int i = 0; i < 500; i++) {
+                int row = random.nextInt(300);
+                int col = random.nextInt(40);
+                Cell cell = random.nextInt(5) == 0 ? EmptyCell.INSTANCE : new ValueCell(Integer.toString(round * 1000 + i));
+                cells.set(row, col, cell);
+                expected[row][col] = cell instanceof EmptyCell ? null : cell;
+            }
+            snapshots.add(cells.snapshot());
+            Cell[][] copy = new Cell[300][];
+            for (int row = 0; row < 300; row++) copy[row] = expected[row].clone();
+            snapshotExpected.add(copy);
+            
+            // writing to a snapshot doesn't leak back into the storage
+            CellStorage latest = snapshots.get(snapshots.size() - 1);
+            latest.set(0, 0, new ValueCell("-1"));
+            latest.set(0, 0, expected[0][0] == null ? EmptyCell.INSTANCE : expected[0][0]);
+        }
+        
+        for (int i = 0; i < snapshots.size(); i++) {
+            for (int row = 0; row < 300; row++) {
+                for (int col = 0; col < 40; col++) {
+                    assertCell(snapshotExpected.get(i)[row][col], snapshots.get(i).get(row, col));
+                }
+            }
+        }
+        for (int row = 0; row < 300; row++) {
+            for (int col = 0; col < 40; col++) assertCell(expected[row][col], cells.get(row, col));
+        }
+        
+        // every write holds a new number, so the differences are exactly the slots written since the first snapshot
+        CellStorage first = snapshots.get(0);
+        int[] differences = new int[1];
+        first.forEachDifference(cells, (row, col, cell) -> {
+            Cell before = snapshotExpected.get(0)[row][col];
+            assertFalse(BaseCell.sameContent(before == null ? EmptyCell.INSTANCE : before, cells.get(row, col)));
+            differences[0]++;
+        });
+        int changed = 0;
+        for (int row = 0; row < 300; row++) {
+            for (int col = 0; col < 40; col++) {
+                if (snapshotExpected.get(0)[row][col] != expected[row][col]) changed++;
+            }
+        }
+        assertEquals(changed, differences[0]);
+    }
+    
+    @Test
+    public void testTiledCopyOnWrite() {
+        checkCopyOnWrite(new TiledCellStorage());
+    }
+    
+    @Test
+    public void testColumnarCopyOnWrite() {
+        checkCopyOnWrite(new ColumnarCellStorage(40));
+    }
+    
+    @Test
+    public void testSnapshotRestoreAndDiff() {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("B2 = \"text\"");
+        sheet.processCommand("C3 = ( A1 * 2 )");
+        assertEquals("", sheet.processCommand("snapshot before"));
+        assertEquals("", sheet.processCommand("diff before"));
+        
+        sheet.processCommand("A1 = 5");
+        sheet.processCommand("clear B2");
+        sheet.processCommand("D4 = 50%");
+        assertEquals("A1: 1 -> 5\nB2: \"text\" -> (empty)\nD4: (empty) -> 50%", sheet.processCommand("diff before"));
+        assertEquals(10, ((FormulaCell) sheet.getCell("C3")).getDoubleValue(), 0);
+        
+        sheet.processCommand("restore before");
+        assertEquals("1", sheet.processCommand("A1"));
+        assertEquals("\"text\"", sheet.processCommand("B2"));
+        assertEquals("", sheet.processCommand("D4"));
+        assertEquals(2, ((FormulaCell) sheet.getCell("C3")).getDoubleValue(), 0);
+        assertEquals("", sheet.processCommand("diff before"));
+        
+        // a snapshot can be restored again after more changes
+        sheet.processCommand("A1 = 7");
+        sheet.processCommand("restore before");
+        assertEquals("1", sheet.processCommand("A1"));
+    }
+    
+    @Test
+    public void testRestoreCanBeUndone() {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("snapshot s");
+        sheet.processCommand("A1 = 2");
+        sheet.processCommand("A2 = 3");
+        sheet.processCommand("restore s");
+        assertEquals("", sheet.processCommand("A2"));
+        
+        sheet.processCommand("undo");
+        assertEquals("2", sheet.processCommand("A1"));
+        assertEquals("3", sheet.processCommand("A2"));
+        sheet.processCommand("redo");
+        assertEquals("1", sheet.processCommand("A1"));
+    }
+    
+    @Test
+    public void testSnapshotsReplaceAndFail() {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("snapshot s");
+        sheet.processCommand("A1 = 2");
+        // taking a snapshot under the same name replaces it
+        sheet.processCommand("snapshot s");
+        sheet.processCommand("A1 = 3");
+        assertEquals("A1: 2 -> 3", sheet.processCommand("diff s"));
+        
+        assertEquals("ERROR: no snapshot named t", sheet.processCommand("restore t"));
+        assertEquals("ERROR: no snapshot named t", sheet.processCommand("diff t"));
+        assertTrue(sheet.processCommand("snapshot").startsWith("ERROR"));
+        assertTrue(sheet.processCommand("restore a b").startsWith("ERROR"));
+    }
+}
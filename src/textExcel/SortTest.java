@@ -0,0 +1,110 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class SortTest {
+    /**
+     * Helper method to rank a cell the way sorting orders them, empty before text before numbers
+     * @param cell the cell to rank
+     * @return the rank of the cell
+     */
+    private static int rank(Cell cell) {
+        if (cell instanceof RealCell) return 2;
+        return cell instanceof TextCell ? 1 : 0;
+    }
+    
+    private static final Comparator<Cell> ORDER = (a, b) -> {
+        if (rank(a) != rank(b)) return rank(a) - rank(b);
+        if (rank(a) == 2) return Double.compare(((RealCell) a).getDoubleValue(), ((RealCell) b).getDoubleValue());
+        return a.fullCellText().compareTo(b.fullCellText());
+    };
+    
+    /**
+     * Helper method to fill a range with random values, text, percents and empty cells, with plenty of ties
+     * @param sheet the spreadsheet to fill
+     * @param random the source of the contents
+     */
+    private static void fill(Spreadsheet sheet, Random random) {
+        for (int row = 0; row < 20; row++) {
+            for (int col = 0; col < 5; col++) {
+                String cell = SpreadsheetLocation.cellName(row, col);
+                switch (random.nextInt(4)) {
+                    case 0: sheet.processCommand("clear " + cell); break;
+                    case 1: sheet.processCommand(cell + " = \"" + (char) ('a' + random.nextInt(5)) + "\""); break;
+                    case 2: sheet.processCommand(cell + " = " + random.nextInt(10) + "%"); break;
+                    default: sheet.processCommand(cell + " = " + (random.nextInt(10) - 5) * 0.25);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Helper method to sort a copy of the cells of a range with a stable library sort
+     * @param sheet the spreadsheet to read
+     * @param ascending whether or not to sort in ascending order
+     * @return the cells of A1-E20 in sorted order, row by row
+     */
+    private static ArrayList<Cell> expected(Spreadsheet sheet, boolean ascending) {
+        ArrayList<Cell> cells = new ArrayList<>();
+        for (int row = 0; row < 20; row++) {
+            for (int col = 0; col < 5; col++) cells.add(sheet.getCell(row, col));
+        }
+        cells.sort(ascending ? ORDER : (a, b) -> ORDER.compare(b, a));
+        return cells;
+    }
+    
+    @Test
+    public void testHeterogeneousSortIsStable() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 20; trial++) {
+            boolean ascending = trial % 2 == 0;
+            Spreadsheet sheet = new Spreadsheet();
+            fill(sheet, random);
+            ArrayList<Cell> expected = expected(sheet, ascending);
+            
+            sheet.processCommand((ascending ? "sorta" : "sortd") + " A1-E20");
+            for (int i = 0; i < expected.size(); i++) {
+                // equal keys keep their original order, so the very same cell objects line up
+                assertSame(expected.get(i), sheet.getCell(i / 5, i % 5));
+            }
+        }
+    }
+    
+    @Test
+    public void testSortMovesFormulas() {
+        Spreadsheet sheet = new Spreadsheet();
+        sheet.processCommand("B1 = 4");
+        sheet.processCommand("A1 = ( B1 * 2 )");
+        sheet.processCommand("A2 = 3");
+        sheet.processCommand("A3 = \"x\"");
+        sheet.processCommand("sorta A1-A3");
+        assertEquals("\"x\"", sheet.processCommand("A1"));
+        assertEquals("3", sheet.processCommand("A2"));
+        assertEquals("( B1 * 2 )", sheet.processCommand("A3"));
+        
+        // the formula still recalculates from where it was moved to
+        sheet.processCommand("B1 = 1");
+        assertEquals(2, ((FormulaCell) sheet.getCell("A3")).getDoubleValue(), 0);
+    }
+    
+    @Test
+    public void testInvalidRanges() {
+        Spreadsheet sheet = new Spreadsheet();
+        assertTrue(sheet.processCommand("sorta A1").startsWith("ERROR"));
+        assertTrue(sheet.processCommand("sortd A1-Z1").startsWith("ERROR"));
+        // a backwards range is nothing to sort
+        sheet.processCommand("A1 = 2");
+        sheet.processCommand("A2 = 1");
+        sheet.processCommand("sorta A2-A1");
+        assertEquals("2", sheet.processCommand("A1"));
+    }
+}
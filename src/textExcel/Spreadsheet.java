@@ -3,23 +3,116 @@
 
 package textExcel;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.IntBinaryOperator;
 
-public class Spreadsheet implements Grid {
-    private ArrayList<String> history = new ArrayList<>();
+public class Spreadsheet implements CellGrid {
+    private static final CommandRegistry<Spreadsheet> COMMANDS = new CommandRegistry<Spreadsheet>()
+            .register("clear", Spreadsheet::clearCommand)
+            .register("sorta", (sheet, line) -> sheet.sortCommand(line, true))
+            .register("sortd", (sheet, line) -> sheet.sortCommand(line, false))
+            .register("view", Spreadsheet::viewCommand)
+            .register("print", (sheet, line) -> sheet.printCommand())
+            .register("history", Spreadsheet::historyCommand)
+            .register("load", Spreadsheet::loadCommand)
+            .register("export", Spreadsheet::exportCommand)
+            .register("save", Spreadsheet::saveCommand)
+            .register("open", Spreadsheet::openCommand)
+            .register("undo", (sheet, line) -> sheet.undoCommand(true))
+            .register("redo", (sheet, line) -> sheet.undoCommand(false))
+            .register("snapshot", Spreadsheet::snapshotCommand)
+            .register("restore", Spreadsheet::restoreCommand)
+            .register("diff", Spreadsheet::diffCommand)
+            .setFallback(Spreadsheet::cellCommand);
+    
+    private final CommandHistory history = new CommandHistory(1);
     private boolean recordingHistory = false;
-    private int historyMaxSize = 1;
+    private final CommandLine commandLine = new CommandLine();
+    // in batch mode commands don't recalculate or redraw until asked to
+    private boolean batchMode = false;
+    
+    /**
+     * Sheets with more slots than this use sparse tiled storage instead of a dense array
+     */
+    private static final int DENSE_STORAGE_LIMIT = 1 << 16;
     
-    private final Cell[][] cells;
+    // replaced when a sheet file is opened
+    private CellStorage cells;
     private final int numRows;
     private final int numCols;
     
-    public Spreadsheet(int rows, int columns) {
+    /**
+     * The largest window processCommand displays by default, matching the classic 20x12 sheet
+     */
+    private static final int DEFAULT_VIEW_ROWS = 20;
+    private static final int DEFAULT_VIEW_COLS = 12;
+    
+    // the window of the sheet that processCommand displays
+    private final GridView view;
+    
+    private final DependencyGraph dependencies = new DependencyGraph();
+    private final RangeIndex rangeIndex;
+    private final LinkedHashSet<Long> changedCells = new LinkedHashSet<>();
+    // told about every cell whose content or result changes, null if nobody is listening
+    private CellStorage.CellVisitor cellListener;
+    // records commands that change the sheet, null if changes aren't journaled
+    private Journal journal;
+    // counts every change to the cells, so a command can tell whether it changed anything
+    private long changeCount;
+    
+    private static final int MAX_UNDO = 100;
+    private final ArrayDeque<CellDelta> undoStack = new ArrayDeque<>();
+    private final ArrayDeque<CellDelta> redoStack = new ArrayDeque<>();
+    // the changes made by the running command, null while running a command that can't be undone
+    private CellDelta recordedChanges;
+    
+    // named snapshots of the cells, sharing storage with the sheet until either side changes
+    private final HashMap<String, CellStorage> snapshots = new HashMap<>();
+    
+    // the workbook this is a sheet of and its name there, both null for a standalone spreadsheet
+    private Workbook workbook;
+    private String name;
+    // what formulas read on other sheets, one graph per lower cased sheet name, keyed by the cells there
+    private final HashMap<String, DependencyGraph> sheetDependencies = new HashMap<>();
+    
+    /**
+     * Levels of the recalculation with fewer cells than this are evaluated on the calling thread
+     */
+    private static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    
+    public Spreadsheet(int rows, int columns, CellStorage storage) {
+        if (rows < 1 || rows > SpreadsheetLocation.MAX_ROWS || columns < 1 || columns > SpreadsheetLocation.MAX_COLUMNS) {
+            throw new IllegalArgumentException("spreadsheet size out of bounds: " + rows + "x" + columns);
+        }
         this.numRows = rows;
         this.numCols = columns;
-        cells = new Cell[rows][columns];
-        emptyAllCells();
+        this.cells = storage;
+        this.rangeIndex = new RangeIndex(columns);
+        this.view = new GridView(this, 0, 0, DEFAULT_VIEW_ROWS, DEFAULT_VIEW_COLS);
+    }
+    
+    public Spreadsheet(int rows, int columns) {
+        this(rows, columns, (long) rows * columns <= DENSE_STORAGE_LIMIT
+                ? new DenseCellStorage(rows, columns) : new TiledCellStorage());
     }
     
     public Spreadsheet() {
@@ -43,122 +136,745 @@ public class Spreadsheet implements Grid {
     }
     
     /**
-     * Helper method that sets all cells as empty cells if they are not already empty
+     * Helper method that empties every cell, empty cells are implicit so this just drops everything stored
      */
     private void emptyAllCells() {
-        for (int i = 0; i < getRows(); i++) {
-            for (int j = 0; j < getCols(); j++) {
-                // check if it is already empty first, so we don't unnecessarily create new objects
-                if (!(cells[i][j] instanceof EmptyCell)) cells[i][j] = new EmptyCell();
-            }
-        }
+        if (cellListener != null) cells.forEach((row, col, cell) -> cellListener.visit(row, col, EmptyCell.INSTANCE));
+        cells.clear();
+        changeCount++;
+        view.invalidate();
+        // nothing is left to reference anything else
+        dependencies.clear();
+        sheetDependencies.clear();
+        rangeIndex.clear();
+        changedCells.clear();
     }
     
     @Override
     public String processCommand(String command) {
-        if (command.trim().isEmpty()) return "";  // don't even touch input if nothing
-        String[] splitCommand = command.split(" ");
+        CommandLine line = commandLine.reset(command);
+        if (line.size() == 0) return "";  // don't even touch input if nothing
         
         // recording command history
-        if (recordingHistory && !splitCommand[0].equalsIgnoreCase("history")) {
-            history.add(0, command);
-            if (history.size() > historyMaxSize) history.remove(history.size() - 1);
+        String historyError = null;
+        if (!line.matches(0, "history")) {
+            try {
+                recordHistory(command);
+            } catch (IOException e) {
+                historyError = "ERROR: could not write history file: " + e.getMessage();
+            }
         }
         
-        // commands if-else chain monster
-        if (splitCommand[0].equalsIgnoreCase("clear")) {
-            // clear command
-            if (splitCommand.length == 1) {
-                emptyAllCells();
-            } else {
-                if (isValidLocation(splitCommand[1])) {
-                    Location loc = new SpreadsheetLocation(splitCommand[1]);
-                    // object creation overhead is more expensive than checking if the cell is already empty
-                    if (!(getCell(loc) instanceof EmptyCell)) setCell(loc, new EmptyCell());
-                    // this only creates a new object if the cell is not already empty
-                } else return "ERROR: invalid cell location to clear";
+        boolean undoable = isModifying(line) && !line.matches(0, "open") && !isUndoCommand(line);
+        if (undoable) recordedChanges = new CellDelta();
+        long changesBefore = changeCount;
+        String result;
+        try {
+            result = COMMANDS.lookup(line).execute(this, line);
+        } finally {
+            if (undoable) pushUndo();
+        }
+        
+        if (journal != null && changeCount != changesBefore) result = journal(line, command.trim(), result);
+        if (historyError != null) result = result.isEmpty() ? historyError : result + "\n" + historyError;
+        return result;
+    }
+    
+    /**
+     * @param line the tokenized command
+     * @return true for undo and redo
+     */
+    private static boolean isUndoCommand(CommandLine line) {
+        return line.matches(0, "undo") || line.matches(0, "redo");
+    }
+    
+    /**
+     * Helper method to finish recording the changes of a command, they can be undone if there were any
+     */
+    private void pushUndo() {
+        CellDelta changes = recordedChanges;
+        recordedChanges = null;
+        if (changes.size() == 0) return;
+        
+        changes.trim();
+        undoStack.push(changes);
+        if (undoStack.size() > MAX_UNDO) undoStack.removeLast();
+        // a new change starts a new line of history, what was undone can't be redone on top of it
+        redoStack.clear();
+    }
+    
+    /**
+     * Helper method to check whether a command can change the cells of the sheet
+     * @param line the tokenized command
+     * @return true for assignments, clear, sorting, load, open, undo, redo and restore
+     */
+    private static boolean isModifying(CommandLine line) {
+        return line.matches(0, "clear") || line.matches(0, "sorta") || line.matches(0, "sortd")
+                || line.matches(0, "load") || line.matches(0, "open") || isUndoCommand(line)
+                || line.matches(0, "restore") || line.size() > 1 && line.matches(1, "=");
+    }
+    
+    /**
+     * Helper method to record a command that changed the sheet in the journal
+     * Only called for commands that changed a cell, so failed and no-op commands never reach the journal.
+     * Commands that read other files are checkpointed instead, replaying them later could read something else.
+     * So are undo and redo, the undo stack isn't part of a checkpoint so replaying them could undo something else.
+     * So is restore, snapshots aren't part of a checkpoint either.
+     * @param line the tokenized command
+     * @param command the command
+     * @param result the output of the command
+     * @return the output of the command, with an error added if the journal couldn't be written
+     */
+    private String journal(CommandLine line, String command, String result) {
+        try {
+            if (line.matches(0, "load") || line.matches(0, "open") || isUndoCommand(line) || line.matches(0, "restore")) {
+                journal.checkpoint(this);
+            } else journal.append(this, command);
+        } catch (IOException e) {
+            return result + "\nERROR: could not write journal: " + e.getMessage();
+        }
+        return result;
+    }
+    
+    /**
+     * Sets the journal that commands changing the sheet are recorded in, see {@link Journal#open(Path, Spreadsheet)}
+     * @param journal the journal, or null to stop journaling
+     */
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+    
+    /**
+     * Adds a command to the history if history is being recorded
+     * @param command the command as it was entered
+     * @throws IOException if the history file can't be written, the command is still recorded in memory
+     */
+    void recordHistory(String command) throws IOException {
+        if (recordingHistory) history.add(command);
+    }
+    
+    /**
+     * Writes out and closes the history file, if there is one, call before quitting
+     * @throws IOException if the history file can't be written
+     */
+    public void closeHistory() throws IOException {
+        history.close();
+    }
+    
+    /**
+     * Visits every cell that isn't empty, in no particular order
+     * @param visitor the visitor to call for each cell
+     */
+    public void forEachCell(CellStorage.CellVisitor visitor) {
+        cells.forEach(visitor);
+    }
+    
+    /**
+     * Sets the listener told about every cell whose content or recalculated result changes
+     * Cells are reported as they change, a formula is reported again once it has its new result.
+     * Clearing the whole sheet reports every cell that was populated as an EmptyCell.
+     * @param listener the listener, or null to stop listening
+     */
+    public void setCellListener(CellStorage.CellVisitor listener) {
+        this.cellListener = listener;
+    }
+    
+    /**
+     * Makes this spreadsheet a sheet of a workbook, before any formulas are set, see {@link Workbook}
+     * @param workbook the workbook
+     * @param name the name of this sheet in the workbook
+     */
+    void attach(Workbook workbook, String name) {
+        this.workbook = workbook;
+        this.name = name;
+    }
+    
+    /**
+     * @return the workbook this is a sheet of, or null if it isn't part of one
+     */
+    public Workbook getWorkbook() {
+        return workbook;
+    }
+    
+    /**
+     * @return the name of this sheet in its workbook, or null if it isn't part of one
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Passes on a change to a cell of another sheet, formulas here reading it are recalculated with the next change
+     * @param sheet the name of the other sheet
+     * @param row the row of the cell that changed
+     * @param col the column of the cell that changed
+     */
+    void sheetCellChanged(String sheet, int row, int col) {
+        DependencyGraph graph = sheetDependencies.get(sheet.toLowerCase(Locale.ROOT));
+        if (graph != null) changedCells.addAll(graph.getDependents(SpreadsheetLocation.pack(row, col)));
+    }
+    
+    /**
+     * @return the lower cased names of the other sheets formulas here read
+     */
+    ArrayList<String> getReadSheets() {
+        ArrayList<String> sheets = new ArrayList<>();
+        for (Map.Entry<String, DependencyGraph> entry : sheetDependencies.entrySet()) {
+            if (!entry.getValue().isEmpty()) sheets.add(entry.getKey());
+        }
+        return sheets;
+    }
+    
+    /**
+     * @return true if some cells changed without being recalculated yet
+     */
+    boolean hasPendingChanges() {
+        return !changedCells.isEmpty();
+    }
+    
+    /**
+     * Recalculates whatever changed, without redrawing
+     */
+    void recalculatePending() {
+        recalculate();
+    }
+    
+    /**
+     * Marks every formula still waiting to be recalculated as an error, used to cut off a reference cycle across sheets
+     * Only formulas that weren't errors yet are reported as changed, so passing the marks on comes to an end.
+     */
+    void markPendingCircular() {
+        LinkedHashSet<Long> affected = dependencies.getAffectedCells(changedCells);
+        changedCells.clear();
+        for (long key : affected) {
+            Cell cell = cells.get(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key));
+            if (cell instanceof FormulaCell && !((FormulaCell) cell).hasError()) {
+                ((FormulaCell) cell).markCircular();
+                formulaChanged(key, cell);
             }
-        } else if (splitCommand[0].toLowerCase().startsWith("sort") && splitCommand[0].length() == 5) {
-            // sort command
-            char sortType = Character.toUpperCase(splitCommand[0].charAt(4));
-            if (sortType == 'A' || sortType == 'D') {
-                this.sort(splitCommand[1], sortType == 'A');
-            } else return "ERROR: invalid sort type";
-        } else if (splitCommand[0].equalsIgnoreCase("history")) {
-            // history command
-            if (splitCommand[1].equalsIgnoreCase("start")) {
-                historyMaxSize = Integer.parseInt(splitCommand[2]);
-                recordingHistory = true;
-            } else if (splitCommand[1].equalsIgnoreCase("clear")) {
-                for (int i = 0; i < Integer.parseInt(splitCommand[2]); i++) {
-                    if (!history.isEmpty()) history.remove(history.size() - 1);
+        }
+    }
+    
+    /**
+     * Runs a sequence of commands in batch mode
+     *
+     * Commands that modify the sheet don't recalculate or redraw anything while the batch runs, the
+     * sheet is recalculated once at the end instead. A print command in the batch forces a redraw.
+     * Queries of formula values through {@link #getCell(Location)} may be stale until the batch finishes.
+     * A command that fails with a runtime exception is reported as an error with its line, counting from 1,
+     * and the batch carries on with the next command.
+     * @param commands the commands to run, in order
+     * @param output receives everything the commands display, like errors, query results and printed views
+     * @return the view of the spreadsheet after the last command
+     */
+    public String processBatch(Iterable<String> commands, Consumer<String> output) {
+        batchMode = true;
+        try {
+            int lineNumber = 0;
+            for (String command : commands) {
+                lineNumber++;
+                String result;
+                try {
+                    result = processCommand(command);
+                } catch (RuntimeException e) {
+                    result = "ERROR: line " + lineNumber + ": " + e.getMessage();
                 }
-            } else if (splitCommand[1].equalsIgnoreCase("stop")) {
-                history.clear();
-                recordingHistory = false;
-            } else return String.join("\n", history);  // history display command
-            return "";
+                if (!result.isEmpty()) output.accept(result);
+            }
+        } finally {
+            batchMode = false;
+        }
+        return refresh();
+    }
+    
+    /**
+     * Recalculates whatever changed and redraws, every command that modifies the sheet ends with this
+     * @return the current view of the spreadsheet, or nothing in batch mode
+     */
+    private String refresh() {
+        if (batchMode) return "";
+        recalculate();
+        return getViewText();
+    }
+    
+    /**
+     * print, redraws the view even in batch mode
+     */
+    private String printCommand() {
+        recalculate();
+        return getViewText();
+    }
+    
+    /**
+     * clear [location]
+     */
+    private String clearCommand(CommandLine line) {
+        if (line.size() == 1) {
+            if (recordedChanges != null) {
+                cells.forEach((row, col, cell) -> recordedChanges.add(SpreadsheetLocation.pack(row, col), cell, EmptyCell.INSTANCE));
+            }
+            emptyAllCells();
         } else {
-            // if it is not a command, it must be value fetching or assignment
-            if (isValidLocation(splitCommand[0])) {
-                Location loc = new SpreadsheetLocation(splitCommand[0]);
-                if (splitCommand.length == 1) {
-                    // value query and return
-                    return getCell(loc).fullCellText();
-                } else {
-                    // value assignment
-                    String assignString = command.split(" = ", 2)[1];
-                    Cell cellValue;
-                    
-                    if (assignString.startsWith("\"") && assignString.endsWith("\"")) {
-                        // assign a text cell
-                        cellValue = new TextCell(assignString);
-                    } else if (assignString.startsWith("( ") && assignString.endsWith(" )")) {
-                        // assign a formula cell if valid formula
-                        if (isValidFormulaAssignment(assignString)) {
-                            cellValue = new FormulaCell(assignString, this, loc);
-                        } else return "ERROR: invalid formula";
-                    } else if (assignString.endsWith("%")) {
-                        // assign a percent cell
-                        cellValue = new PercentCell(assignString);
-                    } else if (isValidValue(assignString)) {
-                        // assign a value cell
-                        cellValue = new ValueCell(assignString);
-                    } else {
-                        return "ERROR: invalid cell value";
-                    }
-                    
-                    setCell(loc, cellValue);
+            long key = line.location(1);
+            if (!isInBounds(key)) return "ERROR: invalid cell location to clear";
+            
+            int row = SpreadsheetLocation.unpackRow(key);
+            int col = SpreadsheetLocation.unpackCol(key);
+            if (!(getCell(row, col) instanceof EmptyCell)) setCell(new SpreadsheetLocation(col, row), EmptyCell.INSTANCE);
+        }
+        return refresh();
+    }
+    
+    /**
+     * sorta range, sortd range
+     */
+    private String sortCommand(CommandLine line, boolean ascending) {
+        long[] range = line.range(1);
+        if (range == null || !isInBounds(range[0]) || !isInBounds(range[1])) return "ERROR: invalid range to sort";
+        
+        // sorting compares values, so anything deferred by batch mode has to be calculated first
+        recalculate();
+        this.sort(range[0], range[1], ascending);
+        return refresh();
+    }
+    
+    /**
+     * view location [rows columns], moves the displayed window
+     */
+    private String viewCommand(CommandLine line) {
+        if (line.size() != 2 && line.size() != 4) return "ERROR: usage is view <top left> [rows columns]";
+        long key = line.location(1);
+        if (!isInBounds(key)) return "ERROR: invalid view location";
+        
+        int rows = DEFAULT_VIEW_ROWS;
+        int columns = DEFAULT_VIEW_COLS;
+        if (line.size() == 4) {
+            rows = line.count(2);
+            columns = line.count(3);
+            if (rows < 0 || columns < 0) return "ERROR: invalid view size";
+        }
+        view.moveTo(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key), rows, columns);
+        return refresh();
+    }
+    
+    /**
+     * history start n, history clear n, history stop, history file [file], history search text, history display
+     */
+    private String historyCommand(CommandLine line) {
+        if (line.matches(1, "start")) {
+            // 0 is allowed, a history of no commands keeps nothing
+            int size = line.wholeNumber(2);
+            if (size < 0) return "ERROR: invalid history size";
+            history.resize(size);
+            recordingHistory = true;
+        } else if (line.matches(1, "clear")) {
+            int numToClear = line.wholeNumber(2);
+            if (numToClear < 0) return "ERROR: invalid number of commands to clear";
+            history.removeOldest(numToClear);
+        } else if (line.matches(1, "stop")) {
+            history.clear();
+            recordingHistory = false;
+        } else if (line.matches(1, "file")) {
+            // also append every recorded command to a file, or stop with no file given
+            if (line.size() > 3) return "ERROR: usage is history file [file]";
+            try {
+                history.setFile(line.size() == 3 ? Paths.get(line.token(2)) : null);
+            } catch (IOException e) {
+                return "ERROR: could not open history file: " + e.getMessage();
+            }
+        } else if (line.matches(1, "search")) {
+            if (line.size() < 3) return "ERROR: usage is history search <text>";
+            return history.search(line.rest(2));
+        } else return history.toString();  // history display command
+        return "";
+    }
+    
+    /**
+     * undo, redo, reverses or repeats the changes of the last command that changed cells
+     */
+    private String undoCommand(boolean undo) {
+        ArrayDeque<CellDelta> from = undo ? undoStack : redoStack;
+        if (from.isEmpty()) return undo ? "ERROR: nothing to undo" : "ERROR: nothing to redo";
+        
+        CellDelta changes = from.pop();
+        if (undo) {
+            for (int i = changes.size() - 1; i >= 0; i--) setCell(changes.getKey(i), changes.getBefore(i));
+        } else {
+            for (int i = 0; i < changes.size(); i++) setCell(changes.getKey(i), changes.getAfter(i));
+        }
+        (undo ? redoStack : undoStack).push(changes);
+        return refresh();
+    }
+    
+    /**
+     * snapshot name, remembers the cells as they are now under a name, replacing any snapshot of that name
+     */
+    private String snapshotCommand(CommandLine line) {
+        if (line.size() != 2) return "ERROR: usage is snapshot <name>";
+        
+        CellStorage snapshot = cells.snapshot();
+        if (snapshot == null) {
+            // small sheets start out in dense storage, which can't share anything with a snapshot
+            cells = TiledCellStorage.copyOf(cells);
+            snapshot = cells.snapshot();
+        }
+        snapshots.put(line.token(1), snapshot);
+        return "";
+    }
+    
+    /**
+     * restore name, puts the cells back the way they were when a snapshot was taken, can be undone
+     */
+    private String restoreCommand(CommandLine line) {
+        if (line.size() != 2) return "ERROR: usage is restore <name>";
+        CellStorage snapshot = snapshots.get(line.token(1));
+        if (snapshot == null) return "ERROR: no snapshot named " + line.token(1);
+        
+        // only the cells that differ are set, and the snapshot stays as it was so it can be restored again
+        CellDelta differences = differencesFrom(snapshot);
+        for (int i = 0; i < differences.size(); i++) setCell(differences.getKey(i), differences.getAfter(i));
+        return refresh();
+    }
+    
+    /**
+     * diff name, lists every cell that changed since a snapshot was taken, as the old and the new content
+     */
+    private String diffCommand(CommandLine line) {
+        if (line.size() != 2) return "ERROR: usage is diff <name>";
+        CellStorage snapshot = snapshots.get(line.token(1));
+        if (snapshot == null) return "ERROR: no snapshot named " + line.token(1);
+        
+        CellDelta differences = differencesFrom(snapshot);
+        long[] keys = new long[differences.size()];
+        for (int i = 0; i < keys.length; i++) keys[i] = differences.getKey(i);
+        Arrays.sort(keys);
+        
+        StringBuilder diff = new StringBuilder();
+        for (long key : keys) {
+            int row = SpreadsheetLocation.unpackRow(key);
+            int col = SpreadsheetLocation.unpackCol(key);
+            if (diff.length() > 0) diff.append('\n');
+            diff.append(SpreadsheetLocation.cellName(row, col)).append(": ")
+                    .append(describe(snapshot.get(row, col))).append(" -> ").append(describe(cells.get(row, col)));
+        }
+        return diff.toString();
+    }
+    
+    /**
+     * Helper method to find every cell that differs from a snapshot, tiles still shared with it are skipped
+     * @param snapshot the snapshot
+     * @return the differences, each as the current cell before and the cell of the snapshot after
+     */
+    private CellDelta differencesFrom(CellStorage snapshot) {
+        // collected first, so nothing is set while the storages are being walked
+        CellDelta differences = new CellDelta();
+        snapshot.forEachDifference(cells, (row, col, cell) -> differences.add(SpreadsheetLocation.pack(row, col), cells.get(row, col), cell));
+        return differences;
+    }
+    
+    /**
+     * @param cell a cell
+     * @return the content of the cell as it was entered, or (empty)
+     */
+    private static String describe(Cell cell) {
+        return cell instanceof EmptyCell ? "(empty)" : ((BaseCell) cell).rawInput;
+    }
+    
+    /**
+     * load file topLeft, reads a CSV file into the spreadsheet
+     */
+    private String loadCommand(CommandLine line) {
+        if (line.size() != 3) return "ERROR: usage is load <file.csv> <top left>";
+        long key = line.location(2);
+        if (!isInBounds(key)) return "ERROR: invalid location to load to";
+        
+        long skipped;
+        try (Reader in = Files.newBufferedReader(Paths.get(line.token(1)), StandardCharsets.UTF_8)) {
+            skipped = load(in, new SpreadsheetLocation(SpreadsheetLocation.unpackCol(key), SpreadsheetLocation.unpackRow(key)));
+        } catch (NoSuchFileException e) {
+            return "ERROR: no such file " + line.token(1);
+        } catch (IOException | RuntimeException e) {
+            // whatever was read before the failure stays loaded
+            refresh();
+            return "ERROR: could not load " + line.token(1) + ": " + e.getMessage();
+        }
+        
+        String result = refresh();
+        if (skipped > 0) return "ERROR: " + skipped + " fields outside the spreadsheet were not loaded";
+        return result;
+    }
+    
+    /**
+     * Reads CSV data into the spreadsheet, the first field of the first record goes to {@code topLeft}
+     *
+     * Fields become value, percent or text cells straight away, without being parsed as commands, and
+     * empty fields empty their cell. Nothing is recalculated or redrawn until the next command that does.
+     * @param in the CSV data, read to the end but not closed
+     * @param topLeft the location of the first field
+     * @return the number of fields that were dropped because they fell outside the spreadsheet
+     * @throws IOException if reading fails
+     */
+    public long load(Reader in, Location topLeft) throws IOException {
+        CsvReader csv = new CsvReader(in);
+        ArrayList<String> fields = new ArrayList<>();
+        long skipped = 0;
+        
+        for (int row = topLeft.getRow(); csv.readRecord(fields); row++) {
+            for (int i = 0; i < fields.size(); i++) {
+                int col = topLeft.getCol() + i;
+                if (row >= numRows || col >= numCols) {
+                    skipped++;
+                    continue;
                 }
-            } else return "ERROR: invalid cell location or command";
+                
+                Cell cell = parseField(fields.get(i));
+                if (!(cell instanceof EmptyCell && getCell(row, col) instanceof EmptyCell)) {
+                    setCell(new SpreadsheetLocation(col, row), cell);
+                }
+            }
         }
+        return skipped;
+    }
+    
+    /**
+     * export file [range], writes evaluated cells to a CSV file, by default everything up to the last populated cell
+     */
+    private String exportCommand(CommandLine line) {
+        if (line.size() != 2 && line.size() != 3) return "ERROR: usage is export <file.csv> [range]";
         
-        return getGridText();
+        CellRange range;
+        if (line.size() == 3) {
+            long[] corners = line.range(2);
+            if (corners == null || !isInBounds(corners[0]) || !isInBounds(corners[1])) return "ERROR: invalid range to export";
+            range = new CellRange(SpreadsheetLocation.unpackRow(corners[0]), SpreadsheetLocation.unpackCol(corners[0]),
+                    SpreadsheetLocation.unpackRow(corners[1]), SpreadsheetLocation.unpackCol(corners[1]));
+        } else range = getUsedRange();
+        
+        try (Writer out = Files.newBufferedWriter(Paths.get(line.token(1)), StandardCharsets.UTF_8)) {
+            export(out, range);
+        } catch (NoSuchFileException e) {
+            return "ERROR: no such directory for " + line.token(1);
+        } catch (IOException e) {
+            return "ERROR: could not export " + line.token(1) + ": " + e.getMessage();
+        }
+        return "";
     }
     
     /**
-     * Helper method to check whether or not a string is a valid spreadsheet location
-     * Will return false even if in correct format if the spreadsheet is not large enough to support the location
+     * save file, writes the spreadsheet to a binary sheet file
+     */
+    private String saveCommand(CommandLine line) {
+        if (line.size() != 2) return "ERROR: usage is save <file>";
+        try {
+            save(Paths.get(line.token(1)));
+        } catch (NoSuchFileException e) {
+            return "ERROR: no such directory for " + line.token(1);
+        } catch (IOException e) {
+            return "ERROR: could not save " + line.token(1) + ": " + e.getMessage();
+        }
+        return "";
+    }
+    
+    /**
+     * open file, replaces everything in the spreadsheet with a saved sheet file
+     */
+    private String openCommand(CommandLine line) {
+        if (line.size() != 2) return "ERROR: usage is open <file>";
+        try {
+            open(Paths.get(line.token(1)));
+        } catch (NoSuchFileException e) {
+            return "ERROR: no such file " + line.token(1);
+        } catch (IOException e) {
+            return "ERROR: could not open " + line.token(1) + ": " + e.getMessage();
+        }
+        return refresh();
+    }
+    
+    /**
+     * Saves the spreadsheet, see {@link SheetFile} for the format
+     * @param path the file to write, replaced if it exists
+     * @throws IOException if writing fails
+     */
+    public void save(Path path) throws IOException {
+        SheetFile.write(path, numRows, numCols, cells);
+    }
+    
+    /**
+     * Replaces everything in the spreadsheet with a saved sheet file
+     *
+     * The file is memory mapped and its values and text are only read when their cells are, so even a
+     * huge file opens quickly. Formulas are set right away so they are in the dependency graph, and the
+     * numbers in the file go straight into the range index without building cells for them. Like
+     * {@link #load(Reader, Location)}, nothing is recalculated or redrawn until the next command that does.
+     * @param path the file to open
+     * @throws IOException if the file can't be read, isn't a sheet file, or is bigger than this spreadsheet
+     */
+    public void open(Path path) throws IOException {
+        SheetFile file = SheetFile.open(path);
+        if (file.getRows() > numRows || file.getCols() > numCols) {
+            throw new IOException("the saved sheet is " + file.getRows() + "x" + file.getCols()
+                    + ", bigger than this spreadsheet");
+        }
+        
+        emptyAllCells();
+        // the cells changes were recorded against are gone
+        undoStack.clear();
+        redoStack.clear();
+        CellStorage overlay = cells instanceof MappedCellStorage ? ((MappedCellStorage) cells).getOverlay() : cells;
+        cells = new MappedCellStorage(file, overlay);
+        
+        for (int record = 0; record < file.size(); record++) {
+            long key = file.getKey(record);
+            int row = SpreadsheetLocation.unpackRow(key);
+            int col = SpreadsheetLocation.unpackCol(key);
+            byte type = file.getType(record);
+            
+            if (type == SheetFile.FORMULA) {
+                setCell(new SpreadsheetLocation(col, row), new FormulaCell(file.getInput(record), this));
+            } else if (type != SheetFile.TEXT) rangeIndex.update(row, col, file.getNumber(record));
+        }
+        // formulas were reported as they were set, the rest of the file is only reported if somebody asks
+        if (cellListener != null) cells.forEach(cellListener);
+    }
+    
+    /**
+     * Writes the cells of a range as CSV, one record per row
+     *
+     * Numbers are written at full precision and formulas as their result, #ERROR if they have none.
+     * Text is written without its quotes and empty cells as empty fields. Rows are written as they are
+     * read, nothing is collected in memory.
+     * @param out where to write the CSV, flushed but not closed
+     * @param range the cells to write
+     * @throws IOException if writing fails
+     */
+    public void export(Writer out, CellRange range) throws IOException {
+        // formula results are cached, so bring them up to date once and then just read them
+        recalculate();
+        
+        CsvWriter csv = new CsvWriter(out);
+        for (int row = range.getTop(); row <= range.getBottom(); row++) {
+            for (int col = range.getLeft(); col <= range.getRight(); col++) csv.writeField(formatField(getCell(row, col)));
+            csv.endRecord();
+        }
+        out.flush();
+    }
+    
+    /**
+     * @return the range from A1 to the last row and column holding anything, A1 alone if the sheet is empty
+     */
+    public CellRange getUsedRange() {
+        int[] last = new int[2];
+        cells.forEach((row, col, cell) -> {
+            last[0] = Math.max(last[0], row);
+            last[1] = Math.max(last[1], col);
+        });
+        return new CellRange(0, 0, last[0], last[1]);
+    }
+    
+    /**
+     * Helper method to turn a cell into a CSV field, the reverse of {@link #parseField(String)}
+     * @param cell the cell to write
+     * @return the full value of the cell as text
+     */
+    private static String formatField(Cell cell) {
+        if (cell instanceof FormulaCell && ((FormulaCell) cell).hasError()) return "#ERROR";
+        if (cell instanceof RealCell) {
+            double value = ((RealCell) cell).getDoubleValue();
+            // plain notation, so loading the file back reads numbers as numbers
+            return Double.isInfinite(value) || Double.isNaN(value) ? String.valueOf(value) : BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+        }
+        if (cell instanceof TextCell) {
+            String text = cell.fullCellText();
+            return text.substring(1, text.length() - 1);
+        }
+        return "";
+    }
+    
+    /**
+     * Helper method to turn a CSV field into a cell
+     * @param field the text of the field, without quotes
+     * @return a ValueCell or PercentCell for numbers, an EmptyCell for nothing, and a TextCell for anything else
+     */
+    private static Cell parseField(String field) {
+        if (field.isEmpty()) return EmptyCell.INSTANCE;
+        if (isNumber(field)) return new ValueCell(field);
+        if (field.endsWith("%") && isNumber(field.substring(0, field.length() - 1))) return new PercentCell(field);
+        // cells are a single line, a quoted line break would break up the grid
+        return new TextCell("\"" + field.replace("\r\n", " ").replace('\n', ' ').replace('\r', ' ') + "\"");
+    }
+    
+    /**
+     * Helper method to check that a string is a value that can actually be parsed, unlike "-" or "1.2.3"
      * @param string the string to check
-     * @return true if {@code string} is a valid location on the spreadsheet
+     * @return true if {@code string} is a number ValueCell and PercentCell can parse
      */
-    public boolean isValidLocation(String string) {
-        if (string.length() < 2) return false;
+    private static boolean isNumber(String string) {
+        if (string.isEmpty() || !isValidValue(string)) return false;
+        int digits = 0;
+        int points = 0;
+        for (int i = 0; i < string.length(); i++) {
+            if (Character.isDigit(string.charAt(i))) digits++;
+            else if (string.charAt(i) == '.') points++;
+        }
+        return digits > 0 && points <= 1;
+    }
+    
+    /**
+     * location, location = value
+     * If it is not a command, it must be value fetching or assignment
+     */
+    private String cellCommand(CommandLine line) {
+        long key = line.location(0);
+        if (!isInBounds(key)) return "ERROR: invalid cell location or command";
+        Location loc = new SpreadsheetLocation(SpreadsheetLocation.unpackCol(key), SpreadsheetLocation.unpackRow(key));
+        
+        // value query and return
+        if (line.size() == 1) return getCell(loc).fullCellText();
         
-        char column = Character.toUpperCase(string.charAt(0));
-        // column should be a letter
-        if (!Character.isLetter(column)) return false;
-        // column should be within spreadsheet bounds
-        if (column - 'A' > getCols() - 1) return false;
+        // value assignment
+        if (line.size() < 3 || !line.matches(1, "=")) return "ERROR: invalid cell assignment";
+        String assignString = line.rest(2);
+        Cell cellValue;
         
-        // the rest of the chars should be numeric
-        for (char c : string.substring(1).toCharArray()) {
-            if (!Character.isDigit(c)) return false;
+        if (assignString.startsWith("\"") && assignString.endsWith("\"")) {
+            // assign a text cell
+            cellValue = new TextCell(assignString);
+        } else if (assignString.startsWith("( ") && assignString.endsWith(" )")) {
+            // assign a formula cell if valid formula
+            if (isValidFormulaAssignment(assignString)) {
+                cellValue = new FormulaCell(assignString, this);
+            } else return "ERROR: invalid formula";
+        } else if (assignString.endsWith("%")) {
+            // assign a percent cell
+            cellValue = new PercentCell(assignString);
+        } else if (isValidValue(assignString)) {
+            // assign a value cell
+            cellValue = new ValueCell(assignString);
+        } else {
+            return "ERROR: invalid cell value";
         }
         
-        int row = Integer.parseInt(string.substring(1));
-        // row should be within spreadsheet bounds
-        return row <= getRows() && row > 0;
+        setCell(loc, cellValue);
+        return refresh();
+    }
+    
+    /**
+     * Helper method to check whether or not a packed location is on the spreadsheet
+     * @param key the packed location, or -1 for a location that failed to parse
+     * @return true if {@code key} is a location within the spreadsheet bounds
+     */
+    private boolean isInBounds(long key) {
+        return key >= 0 && SpreadsheetLocation.unpackRow(key) < getRows() && SpreadsheetLocation.unpackCol(key) < getCols();
+    }
+    
+    /**
+     * Helper method to check whether or not a string is a valid spreadsheet location
+     * Will return false even if in correct format if the spreadsheet is not large enough to support the location
+     * @param string the string to check
+     * @return true if {@code string} is a valid location on the spreadsheet
+     */
+    public boolean isValidLocation(String string) {
+        return isInBounds(SpreadsheetLocation.parse(string, 0, string.length()));
     }
     
     /**
@@ -169,10 +885,11 @@ public class Spreadsheet implements Grid {
     public boolean isValidFormulaAssignment(String formula) {
         String[] equation = formula.substring(2, formula.length() - 2).split(" ");
         
-        if (equation[0].equalsIgnoreCase("avg") || equation[0].equalsIgnoreCase("sum")) {
+        if (Expression.RangeFunction.Aggregate.named(equation[0]) != null) {
             // if the formula contains a function, just make sure the range is proper
             String[] range = equation[1].split("-", 2);
-            return isValidLocation(range[0]) && isValidLocation(range[1]);
+            Spreadsheet sheet = referencedSheet(range[0]);
+            return sheet != null && sheet.isValidLocation(range[1]);
         }
         
         for (int i = 0; i < equation.length; i++) {
@@ -180,7 +897,7 @@ public class Spreadsheet implements Grid {
             
             if (i % 2 == 0) {
                 // even terms must be numerical or cells
-                if (!(isValidLocation(term) || isValidValue(term))) return false;
+                if (!(referencedSheet(term) != null || isValidValue(term))) return false;
             } else {
                 // odd terms must be operators
                 char op = term.charAt(0);
@@ -192,82 +909,14 @@ public class Spreadsheet implements Grid {
     }
     
     /**
-     * Helper method to check whether or not a formula cell contains a valid formula
-     * @param formulaCell the formula cell to check
-     * @param locations the location the formula cell exists at
-     * @return true if {@code formulaCell} contains a valid formula
+     * Helper method to check a cell reference, which can name another sheet of the workbook like Sheet2!B3
+     * @param reference the reference
+     * @return the sheet the reference reads, or null if there is no such sheet or the cell isn't on it
      */
-    public boolean isValidFormula(FormulaCell formulaCell, Location... locations) {
-        String[] equation = formulaCell.getEquation();
-    
-        if (equation[0].equalsIgnoreCase("avg") || equation[0].equalsIgnoreCase("sum")) {
-            // if this is a range formula. all cells in range must be valid
-            for (Cell cell : getCellsInRange(equation[1])) {
-                if (!(cell instanceof RealCell)) return false;
-                if (cell instanceof FormulaCell) {
-                    if (!isValidFormula((FormulaCell) cell, locations)) return false;
-                }
-            }
-        } else {
-            // if this is a regular formula
-            for (int i = 0; i < equation.length; i++) {
-                String term = equation[i];
-                if (i % 2 == 0) {
-                    // checking operands
-                    double termValue;
-                    
-                    if (isValidLocation(term)) {
-                        // this must be a cell reference
-                        Cell cell = getCell(term);
-                        if (cell instanceof RealCell) {
-                            if (cell instanceof FormulaCell) {
-                                Location[] newLocations = new Location[locations.length + 1];
-                                int j = 0;
-                                
-                                FormulaCell reference = (FormulaCell) cell;
-                                Location referenceLocation = reference.getLocation();
-                                for (Location location : locations) {
-                                    if (referenceLocation.getCol() == location.getCol() && referenceLocation.getRow() == location.getRow()) {
-                                        // if it is in the same location as any other formula cell, it is self-referencing
-                                        return false;
-                                    }
-                                    newLocations[j++] = location;
-                                }
-                                
-                                newLocations[j] = referenceLocation;
-                                // each formula cell must be valid as well
-                                if (!isValidFormula(reference, newLocations)) return false;
-                            }
-                            
-                            termValue = ((RealCell) cell).getDoubleValue();
-                        } else return false;  // references must be instances of RealCell
-                    } else termValue = Double.parseDouble(term);
-                    // check division by zero
-                    if (i - 1 > 0 && termValue == 0.0 && equation[i - 1].charAt(0) == '/') return false;
-                } else {
-                    // checking operators
-                    if (term.length() > 1) return false;
-                    char c = term.charAt(0);
-                    if (c != '*' && c != '/' && c != '+' && c != '-') return false;
-                }
-            }
-        }
-        return true;
-    }
-    
-    /**
-     * Helper method to parse the value of a cell reference or double
-     * @param value the string value to parse
-     * @return the double value of the reference
-     */
-    public double parseOperand(String value) {
-        if (isValidLocation(value)) {
-            Cell cell = getCell(value);
-            // assume all casting issues will be dealt with elsewhere
-            return ((RealCell) cell).getDoubleValue();
-        } else {
-            return Double.parseDouble(value);
-        }
+    private Spreadsheet referencedSheet(String reference) {
+        int separator = reference.indexOf('!');
+        Spreadsheet sheet = separator < 0 ? this : Expression.resolve(this, reference.substring(0, separator));
+        return sheet != null && sheet.isValidLocation(reference.substring(separator + 1)) ? sheet : null;
     }
     
     /**
@@ -291,20 +940,83 @@ public class Spreadsheet implements Grid {
     
     /**
      * Sorts a range of cells on this spreadsheet
-     * @param range the range of cells to sort
+     *
+     * Empty cells come first, then text cells, then real cells, reversed for descending order.
+     * Sort keys are pulled out of the cells once into primitive arrays, and only an index permutation
+     * is sorted, so every cell is read exactly once no matter how many comparisons the sort makes.
+     * @param start the packed location of the top left of the range
+     * @param end the packed location of the bottom right of the range
      * @param ascending whether or not to sort by ascending order
      */
-    private void sort(String range, boolean ascending) {
-        ArrayList<Cell> sortedRange = new ArrayList<Cell>(getCellsInRange(range)){{
-            this.sort(ascending ? null : Collections.reverseOrder());
-        }};
+    private void sort(long start, long end, boolean ascending) {
+        int top = SpreadsheetLocation.unpackRow(start);
+        int left = SpreadsheetLocation.unpackCol(start);
+        int width = SpreadsheetLocation.unpackCol(end) - left + 1;
+        int height = SpreadsheetLocation.unpackRow(end) - top + 1;
+        if (width <= 0 || height <= 0) return;
+        
+        int size = width * height;
+        Cell[] range = new Cell[size];
+        byte[] ranks = new byte[size];
+        double[] values = new double[size];
+        String[] texts = new String[size];
+        int[] order = new int[size];
+        
+        for (int i = 0; i < size; i++) {
+            Cell cell = getCell(top + i / width, left + i % width);
+            range[i] = cell;
+            order[i] = i;
+            if (cell instanceof RealCell) {
+                ranks[i] = 2;
+                values[i] = ((RealCell) cell).getDoubleValue();
+            } else if (cell instanceof TextCell) {
+                ranks[i] = 1;
+                texts[i] = cell.fullCellText();
+            }
+        }
+        
+        IntBinaryOperator comparator = (a, b) -> {
+            if (ranks[a] != ranks[b]) return ranks[a] - ranks[b];
+            if (ranks[a] == 2) return Double.compare(values[a], values[b]);
+            if (ranks[a] == 1) return texts[a].compareTo(texts[b]);
+            return 0;
+        };
+        mergeSort(order, ascending ? comparator : (a, b) -> comparator.applyAsInt(b, a));
+        
+        for (int i = 0; i < size; i++) {
+            // cells that end up where they started don't need to be touched
+            if (order[i] != i) this.setCell(new SpreadsheetLocation(left + i % width, top + i / width), range[order[i]]);
+        }
+    }
+    
+    /**
+     * Helper method for a stable bottom up merge sort of an index permutation
+     * @param order the indices to sort
+     * @param comparator compares two indices
+     */
+    private static void mergeSort(int[] order, IntBinaryOperator comparator) {
+        int[] source = order;
+        int[] target = new int[order.length];
         
-        int count = 0;
-        for (Location loc : getLocationsInRange(range)) {
-            Cell cell = sortedRange.get(count++);
-            this.setCell(loc, cell);
-            if (cell instanceof FormulaCell) ((FormulaCell) cell).setLocation(loc);
+        for (int run = 1; run < order.length; run *= 2) {
+            for (int low = 0; low < order.length; low += 2 * run) {
+                int mid = Math.min(low + run, order.length);
+                int high = Math.min(low + 2 * run, order.length);
+                
+                int i = low;
+                int j = mid;
+                for (int k = low; k < high; k++) {
+                    // take from the left run on ties to keep the sort stable
+                    if (i < mid && (j >= high || comparator.applyAsInt(source[i], source[j]) <= 0)) target[k] = source[i++];
+                    else target[k] = source[j++];
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
         }
+        
+        if (source != order) System.arraycopy(source, 0, order, 0, order.length);
     }
     
     /**
@@ -314,7 +1026,18 @@ public class Spreadsheet implements Grid {
      */
     @Override
     public Cell getCell(Location loc) {
-        return cells[loc.getRow()][loc.getCol()];
+        return cells.get(loc.getRow(), loc.getCol());
+    }
+    
+    /**
+     * Get the Cell at a row and column in the spreadsheet
+     * @param row the row to query
+     * @param col the column to query
+     * @return the Cell found at {@code row}, {@code col}
+     */
+    @Override
+    public Cell getCell(int row, int col) {
+        return cells.get(row, col);
     }
     
     /**
@@ -331,36 +1054,179 @@ public class Spreadsheet implements Grid {
      * @param cell the cell to set at the {@code location}
      */
     private void setCell(Location loc, Cell cell) {
-        cells[loc.getRow()][loc.getCol()] = cell;
+        changeCount++;
+        if (recordedChanges != null) {
+            recordedChanges.add(SpreadsheetLocation.pack(loc.getRow(), loc.getCol()), cells.get(loc.getRow(), loc.getCol()), cell);
+        }
+        cells.set(loc.getRow(), loc.getCol(), cell);
+        view.markRowDirty(loc.getRow());
+        rangeIndex.update(loc.getRow(), loc.getCol(), cell);
+        if (cellListener != null) cellListener.visit(loc.getRow(), loc.getCol(), cell);
+        
+        long key = SpreadsheetLocation.pack(loc.getRow(), loc.getCol());
+        if (cell instanceof FormulaCell) {
+            FormulaCell formula = (FormulaCell) cell;
+            dependencies.setPrecedents(key, formula.getReferences(), formula.getRanges());
+        } else dependencies.removePrecedents(key);
+        if (workbook != null) setSheetPrecedents(key, cell);
+        changedCells.add(key);
     }
     
     /**
-     * Helper method to get cells in a range
-     * @param range the range to search
-     * @return the cells withing {@code range}
+     * Helper method to record what a cell reads on other sheets, replacing what it read before
+     * @param key the packed location of the cell
+     * @param cell the cell
      */
-    public ArrayList<Cell> getCellsInRange(String range) {
-        return new ArrayList<Cell>() {{
-            for (Location loc : getLocationsInRange(range)) add(getCell(loc));
-        }};
+    private void setSheetPrecedents(long key, Cell cell) {
+        for (DependencyGraph graph : sheetDependencies.values()) graph.removePrecedents(key);
+        if (!(cell instanceof FormulaCell) || ((FormulaCell) cell).getSheetRanges().length == 0) return;
+        
+        HashMap<String, ArrayList<SheetRange>> bySheet = new HashMap<>();
+        for (SheetRange range : ((FormulaCell) cell).getSheetRanges()) {
+            bySheet.computeIfAbsent(range.getSheet().toLowerCase(Locale.ROOT), sheet -> new ArrayList<>()).add(range);
+        }
+        for (String sheet : bySheet.keySet()) {
+            // single cells are kept as references, which are cheaper to look up than ranges
+            LinkedHashSet<Long> references = new LinkedHashSet<>();
+            ArrayList<CellRange> ranges = new ArrayList<>();
+            for (SheetRange range : bySheet.get(sheet)) {
+                if (range.isCell()) references.add(SpreadsheetLocation.pack(range.getRange().getTop(), range.getRange().getLeft()));
+                else ranges.add(range.getRange());
+            }
+            long[] referenceKeys = new long[references.size()];
+            int i = 0;
+            for (long reference : references) referenceKeys[i++] = reference;
+            sheetDependencies.computeIfAbsent(sheet, graph -> new DependencyGraph())
+                    .setPrecedents(key, referenceKeys, ranges.toArray(new CellRange[0]));
+        }
     }
     
     /**
-     * Helper method to get the locations of a range
-     * @param range the range to search
-     * @return the cells withing {@code range}
+     * @param key the packed location in the spreadsheet to set
+     * @param cell the cell to set at {@code key}
      */
-    public static ArrayList<Location> getLocationsInRange(String range) {
-        String[] rSplit = range.split("-", 2);
-        Location start = new SpreadsheetLocation(rSplit[0]);
-        Location end = new SpreadsheetLocation(rSplit[1]);
-        return new ArrayList<Location>() {{
-            for (int row = start.getRow(); row <= end.getRow(); row++) {
-                for (int col = start.getCol(); col <= end.getCol(); col++) {
-                    add(new SpreadsheetLocation(col, row));
-                }
+    private void setCell(long key, Cell cell) {
+        setCell(new SpreadsheetLocation(SpreadsheetLocation.unpackCol(key), SpreadsheetLocation.unpackRow(key)), cell);
+    }
+    
+    /**
+     * Recalculates every formula affected by the cells changed since the last recalculation
+     *
+     * Only the changed cells and their transitive dependents are visited, level by level in topological order,
+     * so each formula is evaluated exactly once and always after the formulas it references. Levels of at least
+     * the parallel threshold are spread across the common ForkJoinPool.
+     */
+    private void recalculate() {
+        if (changedCells.isEmpty()) return;
+        
+        LinkedHashSet<Long> affected = dependencies.getAffectedCells(changedCells);
+        changedCells.clear();
+        
+        for (long[] level : dependencies.sortIntoLevels(affected)) {
+            // nothing in a level reads anything else in it, so its formulas can be evaluated in any order
+            if (level.length < parallelThreshold) {
+                for (long key : level) recalculateFormula(key);
+            } else {
+                // whatever the range index builds on first use is built here, so the workers only read it
+                for (long key : level) prepareFormula(key);
+                ForkJoinPool.commonPool().invoke(new RecalculateTask(this, level, 0, level.length));
+            }
+            
+            // publishing results touches shared state, so it stays on this thread
+            for (long key : level) {
+                Cell cell = cells.get(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key));
+                if (cell instanceof FormulaCell) formulaChanged(key, cell);
+                affected.remove(key);
+            }
+        }
+        
+        // whatever could not be ordered is part of, or depends on, a reference cycle
+        for (long key : affected) {
+            Cell cell = cells.get(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key));
+            if (cell instanceof FormulaCell) {
+                ((FormulaCell) cell).markCircular();
+                formulaChanged(key, cell);
+            }
+        }
+    }
+    
+    /**
+     * Helper method to recalculate the cell at a location if it is a formula
+     * Only reads the rest of the spreadsheet, so it is safe to call for cells of the same level at once.
+     * @param key the packed location of the cell
+     */
+    private void recalculateFormula(long key) {
+        Cell cell = cells.get(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key));
+        if (cell instanceof FormulaCell) ((FormulaCell) cell).recalculate();
+    }
+    
+    /**
+     * Helper method to prepare the cell at a location for recalculating on another thread, if it is a formula
+     * @param key the packed location of the cell
+     */
+    private void prepareFormula(long key) {
+        Cell cell = cells.get(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key));
+        if (cell instanceof FormulaCell) ((FormulaCell) cell).prepare();
+    }
+    
+    /**
+     * Sets how many formulas one level of a recalculation needs before it is spread across threads
+     * @param threshold the smallest level evaluated in parallel, Integer.MAX_VALUE to never go parallel
+     */
+    public void setParallelThreshold(int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("parallel threshold must be positive: " + threshold);
+        this.parallelThreshold = threshold;
+    }
+    
+    /**
+     * Recalculates a slice of one level, splitting it in half until the slices are small
+     */
+    private static class RecalculateTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int SLICE_SIZE = 256;
+        
+        private final Spreadsheet sheet;
+        private final long[] level;
+        private final int from;
+        private final int to;
+        
+        RecalculateTask(Spreadsheet sheet, long[] level, int from, int to) {
+            this.sheet = sheet;
+            this.level = level;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= SLICE_SIZE) {
+                for (int i = from; i < to; i++) sheet.recalculateFormula(level[i]);
+                return;
             }
-        }};
+            
+            int middle = (from + to) >>> 1;
+            invokeAll(new RecalculateTask(sheet, level, from, middle), new RecalculateTask(sheet, level, middle, to));
+        }
+    }
+    
+    /**
+     * Helper method to publish the new result of a recalculated formula
+     * @param key the packed location of the formula
+     * @param cell the formula cell
+     */
+    private void formulaChanged(long key, Cell cell) {
+        int row = SpreadsheetLocation.unpackRow(key);
+        int col = SpreadsheetLocation.unpackCol(key);
+        view.markRowDirty(row);
+        rangeIndex.update(row, col, cell);
+        if (cellListener != null) cellListener.visit(row, col, cell);
+    }
+    
+    /**
+     * @return the maintained sums and counts of numeric cells, used by range functions
+     */
+    public RangeIndex getRangeIndex() {
+        return rangeIndex;
     }
     
     /**
@@ -368,19 +1234,38 @@ public class Spreadsheet implements Grid {
      */
     @Override
     public String getGridText() {
-        StringBuilder gridText = new StringBuilder("   |");
-        // draw the columns header
-        for (char col = 'A'; col < (char) getCols() + 'A'; col++) gridText.append(col).append("         |");
-        gridText.append("\n");
-        
-        for (int row = 1; row <= getRows(); row++) {
-            String num = (row + "  ").substring(0, 3);
-            gridText.append(num).append("|");
-            for (char col = 'A'; col < (char) getCols() + 'A'; col++) {
-                gridText.append(getCell(new SpreadsheetLocation(col, row)).abbreviatedCellText()).append("|");
-            }
-            gridText.append("\n");
-        }
-        return gridText.toString();
+        return getGridText(0, 0, getRows(), getCols());
+    }
+    
+    /**
+     * @return the window of the spreadsheet selected with the view command, in grid text form for display
+     */
+    public String getViewText() {
+        return view.getText();
+    }
+    
+    /**
+     * Renders a window of the spreadsheet, only the cells inside the window are ever touched
+     * The window is clipped to the bounds of the spreadsheet
+     * @param topLeft the top left cell of the window
+     * @param rows the number of rows in the window
+     * @param columns the number of columns in the window
+     * @return the window in grid text form for display
+     */
+    public String getGridText(Location topLeft, int rows, int columns) {
+        return getGridText(topLeft.getRow(), topLeft.getCol(), rows, columns);
+    }
+    
+    /**
+     * Helper method to render a window, reusing the view's rendered text if it shows the same window
+     * @param top the first row of the window
+     * @param left the first column of the window
+     * @param rows the number of rows in the window
+     * @param columns the number of columns in the window
+     * @return the window in grid text form for display
+     */
+    private String getGridText(int top, int left, int rows, int columns) {
+        if (view.shows(top, left, rows, columns)) return view.getText();
+        return new GridView(this, top, left, rows, columns).getText();
     }
 }
@@ -4,6 +4,15 @@
 package textExcel;
 
 public class SpreadsheetLocation implements Location {
+    /**
+     * The number of columns that can be named, A through ZZZ
+     */
+    public static final int MAX_COLUMNS = 26 + 26 * 26 + 26 * 26 * 26;
+    /**
+     * The number of rows that can be named
+     */
+    public static final int MAX_ROWS = 1 << 20;
+    
     private final int column;
     private final int row;
     
@@ -37,10 +46,107 @@ public class SpreadsheetLocation implements Location {
     }
     
     /**
-     * Constructor in the form of (string) ex: L20 = "L20"
+     * Constructor in the form of (string) ex: L20 = "L20", AB7 = "AB7"
      * @param cellName the cell name
+     * @throws IllegalArgumentException if {@code cellName} is not a cell name
      */
     public SpreadsheetLocation(String cellName) {
-        this(cellName.charAt(0), Integer.parseInt(cellName.substring(1)));
+        this(parseChecked(cellName));
+    }
+    
+    /**
+     * Constructor from a packed key, see {@link #pack(int, int)}
+     * @param key the packed row and column
+     */
+    private SpreadsheetLocation(long key) {
+        this(unpackCol(key), unpackRow(key));
+    }
+    
+    /**
+     * Helper method to parse a cell name that is expected to be valid
+     * @param cellName the cell name
+     * @return the packed location of {@code cellName}
+     */
+    private static long parseChecked(String cellName) {
+        long key = parse(cellName, 0, cellName.length());
+        if (key < 0) throw new IllegalArgumentException("not a cell name: " + cellName);
+        return key;
+    }
+    
+    /**
+     * Parses a cell name like "L20" or "ab1048576" in a single pass, without allocating
+     * Does not check against the size of any particular spreadsheet, only against {@link #MAX_ROWS}
+     * @param text the text containing the cell name
+     * @param start the index of the first character of the cell name
+     * @param end the index after the last character of the cell name
+     * @return the packed location, see {@link #pack(int, int)}, or -1 if the text is not a cell name
+     */
+    public static long parse(CharSequence text, int start, int end) {
+        int i = start;
+        int column = 0;
+        // one to three letters for the column, A = 1 through ZZZ = 18278
+        for (; i < end && i - start < 3; i++) {
+            char c = Character.toUpperCase(text.charAt(i));
+            if (c < 'A' || c > 'Z') break;
+            column = column * 26 + (c - 'A' + 1);
+        }
+        if (i == start || i == end) return -1;
+        
+        int row = 0;
+        // then only digits for the row, stopping early so the number can't overflow
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9' || row > MAX_ROWS) return -1;
+            row = row * 10 + (c - '0');
+        }
+        if (row < 1 || row > MAX_ROWS) return -1;
+        
+        return pack(row - 1, column - 1);
+    }
+    
+    /**
+     * @param column the column number
+     * @return the letters naming {@code column}, ex: 0 = "A", 26 = "AA"
+     */
+    public static String columnName(int column) {
+        char[] name = new char[3];
+        int i = name.length;
+        for (int n = column + 1; n > 0; n = (n - 1) / 26) name[--i] = (char) ('A' + (n - 1) % 26);
+        return new String(name, i, name.length - i);
+    }
+    
+    /**
+     * @param row the row number
+     * @param column the column number
+     * @return the name of the cell, ex: 19, 11 = "L20"
+     */
+    public static String cellName(int row, int column) {
+        return columnName(column) + (row + 1);
+    }
+    
+    /**
+     * Packs a row and column into a single key, used to identify cells in maps and sets
+     * @param row the row number
+     * @param column the column number
+     * @return the packed key of the cell
+     */
+    public static long pack(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * @param key a key from {@link #pack(int, int)}
+     * @return the row number packed into {@code key}
+     */
+    public static int unpackRow(long key) {
+        return (int) (key >>> 32);
+    }
+    
+    /**
+     * @param key a key from {@link #pack(int, int)}
+     * @return the column number packed into {@code key}
+     */
+    public static int unpackCol(long key) {
+        return (int) key;
     }
 }
@@ -0,0 +1,69 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class SpreadsheetLocationTest {
+    /**
+     * Helper method to parse a whole string as a cell name
+     * @param name the cell name
+     * @return the packed location, or -1
+     */
+    private static long parse(String name) {
+        return SpreadsheetLocation.parse(name, 0, name.length());
+    }
+    
+    @Test
+    public void testMultiLetterColumns() {
+        assertEquals(SpreadsheetLocation.pack(0, 25), parse("Z1"));
+        assertEquals(SpreadsheetLocation.pack(0, 26), parse("AA1"));
+        assertEquals(SpreadsheetLocation.pack(6, 27), parse("ab7"));
+        assertEquals(SpreadsheetLocation.pack(0, 26 + 26 * 26), parse("AAA1"));
+        assertEquals(SpreadsheetLocation.pack(SpreadsheetLocation.MAX_ROWS - 1, SpreadsheetLocation.MAX_COLUMNS - 1),
+                parse("ZZZ1048576"));
+        
+        SpreadsheetLocation loc = new SpreadsheetLocation("AB7");
+        assertEquals(27, loc.getCol());
+        assertEquals(6, loc.getRow());
+    }
+    
+    @Test
+    public void testNamesRoundTrip() {
+        for (int col = 0; col < SpreadsheetLocation.MAX_COLUMNS; col++) {
+            String name = SpreadsheetLocation.cellName(col % 1000, col);
+            assertEquals(name, SpreadsheetLocation.pack(col % 1000, col), parse(name));
+        }
+        assertEquals("A", SpreadsheetLocation.columnName(0));
+        assertEquals("AZ", SpreadsheetLocation.columnName(51));
+        assertEquals("ZZZ", SpreadsheetLocation.columnName(SpreadsheetLocation.MAX_COLUMNS - 1));
+    }
+    
+    @Test
+    public void testInvalidNames() {
+        assertEquals(-1, parse(""));
+        assertEquals(-1, parse("A"));
+        assertEquals(-1, parse("7"));
+        assertEquals(-1, parse("A0"));
+        assertEquals(-1, parse("AAAA1"));
+        assertEquals(-1, parse("A1048577"));
+        assertEquals(-1, parse("A99999999999"));
+        assertEquals(-1, parse("A1B"));
+    }
+    
+    @Test
+    public void testSpreadsheetBounds() {
+        Spreadsheet sheet = new Spreadsheet(SpreadsheetLocation.MAX_ROWS, 60);
+        assertTrue(sheet.isValidLocation("BH1048576"));
+        assertFalse(sheet.isValidLocation("BI1"));
+        
+        sheet.processCommand("AA1000000 = 3");
+        sheet.processCommand("BH2 = ( AA1000000 * 2 )");
+        assertEquals("3", sheet.processCommand("aa1000000"));
+        assertEquals(6, ((FormulaCell) sheet.getCell("BH2")).getDoubleValue(), 0);
+        assertTrue(sheet.processCommand("BI1 = 1").startsWith("ERROR"));
+    }
+}
@@ -0,0 +1,112 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.Map;
+
+/**
+ * An immutable copy of the cells of a spreadsheet at one point in time
+ *
+ * Cells are kept in a {@link TiledCellStorage}. A new version writes its changes to a snapshot of the
+ * storage of the version before it, so only the tiles that changed are copied and every other tile is
+ * shared. A version's storage is never written once it is published. Formula cells are copied when they
+ * go into a snapshot, so later recalculations of the live sheet never show through.
+ */
+public final class SpreadsheetSnapshot implements CellGrid {
+    private final long version;
+    private final int numRows;
+    private final int numCols;
+    private final CellStorage cells;
+    // rendered on first use, racing threads would only render the same text twice
+    private String gridText;
+
+    /**
+     * Constructor for an empty first version
+     * @param rows the number of rows of the spreadsheet
+     * @param columns the number of columns of the spreadsheet
+     */
+    public SpreadsheetSnapshot(int rows, int columns) {
+        this(0, rows, columns, new TiledCellStorage());
+    }
+
+    private SpreadsheetSnapshot(long version, int rows, int columns, CellStorage cells) {
+        this.version = version;
+        this.numRows = rows;
+        this.numCols = columns;
+        this.cells = cells;
+    }
+
+    /**
+     * Builds the next version of this snapshot
+     * @param changes the new cells, keyed by packed location, an EmptyCell clears a slot
+     * @return a snapshot with {@code changes} applied, this snapshot is left untouched
+     */
+    public SpreadsheetSnapshot with(Map<Long, Cell> changes) {
+        // the tiles of this version stay shared until a change lands in them
+        CellStorage newCells = cells.snapshot();
+        for (Map.Entry<Long, Cell> change : changes.entrySet()) {
+            long key = change.getKey();
+            Cell cell = freeze(change.getValue());
+            newCells.set(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key), cell);
+        }
+        return new SpreadsheetSnapshot(version + 1, numRows, numCols, newCells);
+    }
+
+    /**
+     * Helper method to get a cell that can't change anymore
+     * @param cell the cell of the live sheet
+     * @return {@code cell} itself, or a copy of it if it is a formula
+     */
+    private static Cell freeze(Cell cell) {
+        return cell instanceof FormulaCell ? ((FormulaCell) cell).copy() : cell;
+    }
+
+    /**
+     * @return the number of changes made to the sheet before this snapshot was taken, counted in published versions
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public int getRows() {
+        return numRows;
+    }
+
+    @Override
+    public int getCols() {
+        return numCols;
+    }
+
+    @Override
+    public Cell getCell(int row, int col) {
+        return cells.get(row, col);
+    }
+
+    @Override
+    public Cell getCell(Location loc) {
+        return getCell(loc.getRow(), loc.getCol());
+    }
+
+    /**
+     * Answers a cell query, the only command a snapshot understands
+     * @param command a cell location, like A1
+     * @return the full text of the cell, or an error message
+     */
+    @Override
+    public String processCommand(String command) {
+        String name = command.trim();
+        long key = SpreadsheetLocation.parse(name, 0, name.length());
+        if (key < 0 || SpreadsheetLocation.unpackRow(key) >= numRows || SpreadsheetLocation.unpackCol(key) >= numCols) {
+            return "ERROR: a snapshot can only answer cell queries";
+        }
+        return getCell(SpreadsheetLocation.unpackRow(key), SpreadsheetLocation.unpackCol(key)).fullCellText();
+    }
+
+    @Override
+    public String getGridText() {
+        if (gridText == null) gridText = new GridView(this, 0, 0, numRows, numCols).getText();
+        return gridText;
+    }
+}
@@ -16,7 +16,7 @@ public class TextCell extends BaseCell {
      * @return text for spreadsheet cell display, must be exactly length 10
      */
     @Override
-    public String abbreviatedCellText() {
+    protected String abbreviate() {
         return (noParentheses + "          ").substring(0, 10);
     }
     
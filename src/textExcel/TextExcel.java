@@ -3,6 +3,12 @@
 
 package textExcel;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Scanner;
 
 public class TextExcel {
@@ -10,6 +16,32 @@ public class TextExcel {
     
     public static void main(String[] args) {
         Spreadsheet sheet = new Spreadsheet();
+        
+        if (args.length == 2 && args[0].equals("--script")) {
+            // run a script of commands in batch mode, then print the result and quit
+            runScript(sheet, args[1]);
+            return;
+        }
+        if ((args.length == 2 || args.length == 3 && args[2].equals("--shared")) && args[0].equals("--server")) {
+            // serve sessions over a local socket until killed
+            runServer(args[1], args.length == 3);
+            return;
+        }
+        if (args.length == 2 && args[0].equals("--workbook")) {
+            // work on the sheets of a directory, saving them back on quit
+            runWorkbook(args[1]);
+            return;
+        }
+        Journal journal = null;
+        if (args.length == 2 && args[0].equals("--journal")) {
+            // recover whatever the last session with this journal left behind, then keep journaling
+            try {
+                journal = Journal.open(Paths.get(args[1]), sheet);
+            } catch (IOException e) {
+                System.out.println("ERROR: could not recover from journal " + args[1] + ": " + e.getMessage());
+                return;
+            }
+        }
 
         String input = " ";
         while (!input.equalsIgnoreCase("quit")) {
@@ -19,5 +51,76 @@ public class TextExcel {
         }
         
         scanner.close();
+        try {
+            sheet.closeHistory();
+        } catch (IOException e) {
+            System.out.println("ERROR: could not write history file: " + e.getMessage());
+        }
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                System.out.println("ERROR: could not close journal: " + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Runs every line of a script file as a command, only drawing the grid at the end
+     * A line that fails is reported with its line number, and the rest of the script still runs.
+     * @param sheet the spreadsheet to run the script on
+     * @param fileName the script file
+     */
+    private static void runScript(Spreadsheet sheet, String fileName) {
+        try (BufferedReader script = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            System.out.println(sheet.processBatch(script.lines()::iterator, System.out::println));
+        } catch (IOException | UncheckedIOException e) {
+            System.out.println("ERROR: could not read script " + fileName + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Runs commands on a workbook until quit, see {@link Workbook}
+     * @param directory the directory of the workbook
+     */
+    private static void runWorkbook(String directory) {
+        Workbook workbook;
+        try {
+            workbook = new Workbook(Paths.get(directory));
+        } catch (IOException e) {
+            System.out.println("ERROR: could not open workbook " + directory + ": " + e.getMessage());
+            return;
+        }
+        
+        String input = " ";
+        while (!input.equalsIgnoreCase("quit")) {
+            System.out.println(workbook.processCommand(input));
+            System.out.print("Enter command (\'quit\' to quit): ");
+            input = scanner.nextLine();
+        }
+        
+        scanner.close();
+        try {
+            workbook.close();
+        } catch (IOException e) {
+            System.out.println("ERROR: could not save workbook: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Runs a server on the loopback address, see {@link TextExcelServer}
+     * @param port the port to listen on
+     * @param shared true if every session works on the same spreadsheet
+     */
+    private static void runServer(String port, boolean shared) {
+        try (TextExcelServer server = new TextExcelServer(Integer.parseInt(port), shared)) {
+            System.out.println("Serving " + (shared ? "a shared spreadsheet" : "a spreadsheet per session")
+                    + " on port " + server.getPort());
+            server.serve();
+        } catch (NumberFormatException e) {
+            System.out.println("ERROR: invalid port " + port);
+        } catch (IOException e) {
+            System.out.println("ERROR: could not run server: " + e.getMessage());
+        }
     }
 }
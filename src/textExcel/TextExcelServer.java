@@ -0,0 +1,184 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves spreadsheets to clients over a local TCP socket
+ *
+ * Each connection is a session speaking the same protocol as the console: the client sends one command
+ * per line and gets back the output of processCommand followed by the prompt, until it sends quit.
+ * Every session runs on its own thread, a virtual thread when the JVM has them. Sessions either share
+ * one {@link ConcurrentSpreadsheet} or each get a spreadsheet of their own.
+ *
+ * Only a limited number of sessions run at once. Once that many are connected the server stops accepting,
+ * so further clients wait in the socket backlog instead of piling up threads and spreadsheets.
+ *
+ * Anyone on the machine can connect, so sessions only get the commands that work on the spreadsheet itself.
+ * Commands that read or write files, like save, open, load, export and history file, are refused.
+ */
+public class TextExcelServer implements Closeable {
+    static final String PROMPT = "Enter command ('quit' to quit): ";
+    private static final int DEFAULT_MAX_SESSIONS = 256;
+    // clients waiting for a session queue here, a full backlog makes new connections fail
+    private static final int BACKLOG = 1024;
+    // every other command works on files, which would be read and written as the user running the server
+    private static final String[] SESSION_COMMANDS = {
+            "clear", "sorta", "sortd", "view", "print", "history", "undo", "redo", "snapshot", "restore", "diff"};
+
+    private final ServerSocket serverSocket;
+    private final ConcurrentSpreadsheet sharedSheet;
+    private final Semaphore sessionPermits;
+    private final ThreadFactory sessionThreads = sessionThreadFactory();
+
+    /**
+     * Constructor that binds the server to the loopback address
+     * @param port the port to listen on, 0 for any free port
+     * @param shared true if every session works on the same spreadsheet
+     * @param maxSessions the most sessions served at once
+     * @throws IOException if the port can't be bound
+     */
+    public TextExcelServer(int port, boolean shared, int maxSessions) throws IOException {
+        if (maxSessions < 1) throw new IllegalArgumentException("max sessions must be positive: " + maxSessions);
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        this.sharedSheet = shared ? new ConcurrentSpreadsheet() : null;
+        this.sessionPermits = new Semaphore(maxSessions);
+    }
+
+    public TextExcelServer(int port, boolean shared) throws IOException {
+        this(port, shared, DEFAULT_MAX_SESSIONS);
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts sessions until the server is closed
+     * @throws IOException if accepting fails for any reason other than the server closing
+     */
+    public void serve() throws IOException {
+        while (!serverSocket.isClosed()) {
+            try {
+                sessionPermits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                sessionPermits.release();
+                if (serverSocket.isClosed()) return;
+                throw e;
+            }
+            sessionThreads.newThread(() -> runSession(socket)).start();
+        }
+    }
+
+    /**
+     * Stops accepting sessions, sessions that are already running continue until their clients quit
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    /**
+     * Helper method to serve one client until it quits or disconnects
+     * @param socket the connection to the client
+     */
+    private void runSession(Socket socket) {
+        Spreadsheet ownSheet = sharedSheet != null ? null : new Spreadsheet();
+        Grid sheet = sharedSheet != null ? sharedSheet : ownSheet;
+        CommandLine line = new CommandLine();
+        try (Socket client = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8))) {
+            // greet like the console does, by running the blank command
+            String input = " ";
+            while (input != null && !input.equalsIgnoreCase("quit")) {
+                out.write(isAllowed(line.reset(input)) ? sheet.processCommand(input)
+                        : "ERROR: " + line.token(0) + " is not available in a server session");
+                out.newLine();
+                out.write(PROMPT);
+                out.flush();
+                input = in.readLine();
+            }
+        } catch (IOException e) {
+            // the client went away, there is nobody left to tell
+        } catch (RuntimeException e) {
+            // a command failed in a way it shouldn't, end this session without taking the server down with it
+        } finally {
+            sessionPermits.release();
+            closeHistory(ownSheet);
+        }
+    }
+
+    /**
+     * Helper method to check whether a session may run a command
+     * @param line the tokenized command
+     * @return true for cell commands, blank lines and the commands in {@link #SESSION_COMMANDS}, except history file
+     */
+    private static boolean isAllowed(CommandLine line) {
+        if (line.size() == 0 || line.location(0) >= 0) return true;
+        if (line.matches(0, "history")) return !line.matches(1, "file");
+        for (String command : SESSION_COMMANDS) {
+            if (line.matches(0, command)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Helper method to close the history of a session's own spreadsheet
+     * @param sheet the spreadsheet of the session, or null if it worked on the shared one
+     */
+    private static void closeHistory(Spreadsheet sheet) {
+        if (sheet == null) return;
+        try {
+            sheet.closeHistory();
+        } catch (IOException e) {
+            // sessions can't set a history file, so there is nothing that could have failed to be written
+        }
+    }
+
+    /**
+     * Helper method to find the best kind of thread for sessions
+     * Virtual threads only exist from Java 21 on, so they are looked up by reflection.
+     * @return a factory for virtual threads, or for daemon platform threads if virtual threads aren't available
+     */
+    private static ThreadFactory sessionThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "textExcel-session-", 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger count = new AtomicInteger();
+            return task -> {
+                Thread thread = new Thread(task, "textExcel-session-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+}
@@ -0,0 +1,191 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TextExcelServerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private TextExcelServer server;
+    
+    /**
+     * A client of the server, reading each reply up to the prompt
+     */
+    private static class Client implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final Writer out;
+        private final String greeting;
+        
+        Client(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setSoTimeout(10000);
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            greeting = readReply();
+        }
+        
+        /**
+         * @param command the command to send
+         * @return the output of the command, without the line break and prompt after it
+         */
+        String send(String command) throws IOException {
+            out.write(command + "\n");
+            out.flush();
+            return readReply();
+        }
+        
+        private String readReply() throws IOException {
+            StringBuilder reply = new StringBuilder();
+            String ending = "\n" + TextExcelServer.PROMPT;
+            while (reply.length() < ending.length() || !reply.substring(reply.length() - ending.length()).equals(ending)) {
+                int c = in.read();
+                if (c < 0) throw new IOException("the server hung up");
+                if (c != '\r') reply.append((char) c);
+            }
+            return reply.substring(0, reply.length() - ending.length());
+        }
+        
+        /**
+         * Sends quit, the server hangs up without replying
+         */
+        void quit() throws IOException {
+            out.write("quit\n");
+            out.flush();
+        }
+        
+        /**
+         * @return true once the server has closed the connection
+         */
+        boolean isClosedByServer() throws IOException {
+            return in.read() < 0;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+    
+    /**
+     * Helper method to start a server on a free port, serving on a thread of its own
+     * @param shared true if every session works on the same spreadsheet
+     * @param maxSessions the most sessions served at once
+     */
+    private void start(boolean shared, int maxSessions) throws IOException {
+        server = new TextExcelServer(0, shared, maxSessions);
+        Thread serving = new Thread(() -> {
+            try {
+                server.serve();
+            } catch (IOException e) {
+                // the test fails on its own when nobody answers
+            }
+        });
+        serving.setDaemon(true);
+        serving.start();
+    }
+    
+    @After
+    public void stop() throws IOException {
+        if (server != null) server.close();
+    }
+    
+    @Test
+    public void testSessionProtocol() throws IOException {
+        start(false, 4);
+        try (Client client = new Client(server.getPort())) {
+            // the greeting is the output of a blank command, which is nothing
+            assertEquals("", client.greeting);
+            String grid = client.send("A1 = 3");
+            assertTrue(grid.split("\n")[1].startsWith("1  |3.0       |"));
+            assertEquals("3", client.send("A1"));
+            assertTrue(client.send("Q1 = 1").startsWith("ERROR"));
+            
+            client.quit();
+            assertTrue(client.isClosedByServer());
+        }
+    }
+    
+    @Test
+    public void testSessionsAreSeparateUnlessShared() throws IOException {
+        start(false, 4);
+        try (Client first = new Client(server.getPort()); Client second = new Client(server.getPort())) {
+            first.send("A1 = 1");
+            assertEquals("", second.send("A1"));
+        }
+        server.close();
+        
+        start(true, 4);
+        try (Client first = new Client(server.getPort()); Client second = new Client(server.getPort())) {
+            first.send("A1 = 1");
+            assertEquals("1", second.send("A1"));
+        }
+    }
+    
+    @Test
+    public void testFileCommandsAreRefused() throws IOException {
+        File file = new File(folder.getRoot(), "sheet.bin");
+        File history = new File(folder.getRoot(), "history.txt");
+        start(false, 4);
+        try (Client client = new Client(server.getPort())) {
+            client.send("A1 = 1");
+            assertTrue(client.send("save " + file).startsWith("ERROR"));
+            assertTrue(client.send("export " + file).startsWith("ERROR"));
+            assertTrue(client.send("OPEN " + file).startsWith("ERROR"));
+            assertTrue(client.send("load " + file + " A1").startsWith("ERROR"));
+            assertTrue(client.send("history file " + history).startsWith("ERROR"));
+            assertFalse(file.exists());
+            assertFalse(history.exists());
+            
+            // everything that only works on the spreadsheet is still there
+            client.send("history start 3");
+            client.send("B1 = 2");
+            assertEquals("B1 = 2", client.send("history display"));
+            client.send("undo");
+            assertEquals("", client.send("B1"));
+            client.send("snapshot one");
+            client.send("A1 = 5");
+            assertEquals("A1: 1 -> 5", client.send("diff one"));
+        }
+    }
+    
+    @Test
+    public void testSessionLimit() throws Exception {
+        start(false, 1);
+        try (Client first = new Client(server.getPort());
+             Socket waiting = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            // the second client connects into the backlog but isn't served while the first is
+            waiting.setSoTimeout(300);
+            try {
+                waiting.getInputStream().read();
+                fail("a second session was served");
+            } catch (SocketTimeoutException e) {
+                // nothing was sent, as expected
+            }
+            
+            first.quit();
+            assertTrue(first.isClosedByServer());
+            waiting.setSoTimeout(10000);
+            assertTrue(waiting.getInputStream().read() >= 0);
+        }
+    }
+}
@@ -0,0 +1,264 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sparse cell storage for large spreadsheets
+ *
+ * The sheet is split into square tiles that are only allocated once something is written to them,
+ * so memory scales with the populated area rather than the size of the sheet. Tiles are kept in an
+ * open addressing hash table keyed by the packed tile row and column, which avoids boxing a key on
+ * every lookup.
+ *
+ * A snapshot shares the table and every tile with the storage it was taken from, so taking one costs the
+ * same no matter how many cells there are. Each tile is stamped with the epoch of the storage that owns
+ * it, and both storages move to a new epoch when a snapshot is taken. Writing to a tile stamped with
+ * another epoch copies that tile first, so only the tiles changed afterward are ever copied.
+ */
+public class TiledCellStorage implements CellStorage {
+    private static final int TILE_SHIFT = 6;
+    private static final int TILE_SIZE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE_SIZE - 1;
+    private static final long NO_KEY = -1L;
+    private static final AtomicInteger EPOCHS = new AtomicInteger();
+    
+    private long[] keys;
+    private Cell[][] tiles;
+    private int[] tileEpochs;
+    private int numTiles;
+    
+    // tiles stamped with this epoch belong to this storage alone and can be written in place
+    private int epoch = EPOCHS.incrementAndGet();
+    // whether the table arrays are still shared with a snapshot, they are copied before the first change
+    private boolean tableShared;
+    
+    // consecutive reads usually land on the same tile, so remember the slot of the last one
+    // a single int is safe to share between threads reading at the same time, unlike a key and tile pair
+    private int lastSlot;
+    
+    public TiledCellStorage() {
+        allocate(16);
+    }
+    
+    /**
+     * Constructor for a snapshot, shares every tile of the storage it was taken from
+     */
+    private TiledCellStorage(long[] keys, Cell[][] tiles, int[] tileEpochs, int numTiles) {
+        this.keys = keys;
+        this.tiles = tiles;
+        this.tileEpochs = tileEpochs;
+        this.numTiles = numTiles;
+        this.tableShared = true;
+    }
+    
+    /**
+     * @param cells the cells to copy
+     * @return a tiled storage holding the same cells, so it can be snapshotted
+     */
+    public static TiledCellStorage copyOf(CellStorage cells) {
+        TiledCellStorage copy = new TiledCellStorage();
+        cells.forEach(copy::set);
+        return copy;
+    }
+    
+    @Override
+    public Cell get(int row, int col) {
+        int slot = findSlot(SpreadsheetLocation.pack(row >>> TILE_SHIFT, col >>> TILE_SHIFT));
+        if (slot < 0) return EmptyCell.INSTANCE;
+        
+        Cell cell = tiles[slot][((row & TILE_MASK) << TILE_SHIFT) | (col & TILE_MASK)];
+        return cell == null ? EmptyCell.INSTANCE : cell;
+    }
+    
+    @Override
+    public void set(int row, int col, Cell cell) {
+        long key = SpreadsheetLocation.pack(row >>> TILE_SHIFT, col >>> TILE_SHIFT);
+        int slot = findSlot(key);
+        int index = ((row & TILE_MASK) << TILE_SHIFT) | (col & TILE_MASK);
+        
+        if (cell instanceof EmptyCell || cell == null) {
+            // clearing a slot that is already empty is a no-op, and doesn't copy a shared tile
+            if (slot >= 0 && tiles[slot][index] != null) writableTile(slot)[index] = null;
+            return;
+        }
+        
+        Cell[] tile = slot >= 0 ? writableTile(slot) : addTile(key);
+        tile[index] = cell;
+    }
+    
+    @Override
+    public void clear() {
+        allocate(16);
+    }
+    
+    @Override
+    public void forEach(CellVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == NO_KEY) continue;
+            
+            int baseRow = SpreadsheetLocation.unpackRow(keys[i]) << TILE_SHIFT;
+            int baseCol = SpreadsheetLocation.unpackCol(keys[i]) << TILE_SHIFT;
+            Cell[] tile = tiles[i];
+            for (int j = 0; j < tile.length; j++) {
+                if (tile[j] != null) visitor.visit(baseRow + (j >>> TILE_SHIFT), baseCol + (j & TILE_MASK), tile[j]);
+            }
+        }
+    }
+    
+    /**
+     * Takes a snapshot in constant time, the two storages share every tile until one of them writes to it
+     */
+    @Override
+    public CellStorage snapshot() {
+        TiledCellStorage snapshot = new TiledCellStorage(keys, tiles, tileEpochs, numTiles);
+        tableShared = true;
+        epoch = EPOCHS.incrementAndGet();
+        return snapshot;
+    }
+    
+    /**
+     * Compares tile by tile when {@code other} is tiled too, tiles the two storages still share are skipped
+     */
+    @Override
+    public void forEachDifference(CellStorage other, CellVisitor visitor) {
+        if (!(other instanceof TiledCellStorage)) {
+            CellStorage.super.forEachDifference(other, visitor);
+            return;
+        }
+        
+        TiledCellStorage that = (TiledCellStorage) other;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == NO_KEY) continue;
+            int slot = that.findSlot(keys[i]);
+            if (slot < 0 || that.tiles[slot] != tiles[i]) visitTileDifferences(keys[i], tiles[i], slot < 0 ? null : that.tiles[slot], visitor);
+        }
+        // tiles only the other storage has are different wherever they hold something
+        for (int i = 0; i < that.keys.length; i++) {
+            if (that.keys[i] != NO_KEY && findSlot(that.keys[i]) < 0) visitTileDifferences(that.keys[i], null, that.tiles[i], visitor);
+        }
+    }
+    
+    /**
+     * Helper method to compare one tile of this storage to the same tile of another
+     * @param key the packed tile row and column
+     * @param tile the tile of this storage, or null if it has none
+     * @param other the tile of the other storage, or null if it has none
+     * @param visitor called with the cell of this storage for every slot that differs
+     */
+    private static void visitTileDifferences(long key, Cell[] tile, Cell[] other, CellVisitor visitor) {
+        int baseRow = SpreadsheetLocation.unpackRow(key) << TILE_SHIFT;
+        int baseCol = SpreadsheetLocation.unpackCol(key) << TILE_SHIFT;
+        for (int j = 0; j < TILE_SIZE * TILE_SIZE; j++) {
+            Cell mine = tile == null || tile[j] == null ? EmptyCell.INSTANCE : tile[j];
+            Cell theirs = other == null || other[j] == null ? EmptyCell.INSTANCE : other[j];
+            if (!BaseCell.sameContent(mine, theirs)) visitor.visit(baseRow + (j >>> TILE_SHIFT), baseCol + (j & TILE_MASK), mine);
+        }
+    }
+    
+    /**
+     * Helper method to reset the table to an empty state with the given capacity
+     * @param capacity the number of slots in the table, must be a power of two
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, NO_KEY);
+        tiles = new Cell[capacity][];
+        tileEpochs = new int[capacity];
+        numTiles = 0;
+        lastSlot = 0;
+        tableShared = false;
+    }
+    
+    /**
+     * Helper method to look up a tile
+     * @param key the packed tile row and column
+     * @return the slot of the tile in the table, or -1 if it has not been allocated
+     */
+    private int findSlot(long key) {
+        int last = lastSlot;
+        if (keys[last] == key) return last;
+        
+        for (int i = slot(key); keys[i] != NO_KEY; i = (i + 1) & (keys.length - 1)) {
+            if (keys[i] == key) {
+                lastSlot = i;
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Helper method to get a tile for writing, copying it first if it is shared with a snapshot
+     * @param slot the slot of the tile in the table
+     * @return the tile, owned by this storage alone
+     */
+    private Cell[] writableTile(int slot) {
+        if (tileEpochs[slot] != epoch) {
+            unshareTable();
+            tiles[slot] = tiles[slot].clone();
+            tileEpochs[slot] = epoch;
+        }
+        return tiles[slot];
+    }
+    
+    /**
+     * Helper method to copy the table arrays if they are still shared with a snapshot, the tiles stay shared
+     */
+    private void unshareTable() {
+        if (!tableShared) return;
+        keys = keys.clone();
+        tiles = tiles.clone();
+        tileEpochs = tileEpochs.clone();
+        tableShared = false;
+    }
+    
+    /**
+     * Helper method to allocate a new tile, growing the table if it is half full
+     * @param key the packed tile row and column, must not already be in the table
+     * @return the newly allocated tile
+     */
+    private Cell[] addTile(long key) {
+        if (numTiles * 2 >= keys.length) {
+            long[] oldKeys = keys;
+            Cell[][] oldTiles = tiles;
+            int[] oldEpochs = tileEpochs;
+            allocate(keys.length * 2);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != NO_KEY) insert(oldKeys[i], oldTiles[i], oldEpochs[i]);
+            }
+        } else unshareTable();
+        
+        Cell[] tile = new Cell[TILE_SIZE * TILE_SIZE];
+        insert(key, tile, epoch);
+        return tile;
+    }
+    
+    /**
+     * Helper method to place a tile into the first free slot for its key
+     * @param key the packed tile row and column
+     * @param tile the tile to insert
+     * @param tileEpoch the epoch of the storage that owns the tile
+     */
+    private void insert(long key, Cell[] tile, int tileEpoch) {
+        int i = slot(key);
+        while (keys[i] != NO_KEY) i = (i + 1) & (keys.length - 1);
+        
+        keys[i] = key;
+        tiles[i] = tile;
+        tileEpochs[i] = tileEpoch;
+        numTiles++;
+    }
+    
+    /**
+     * @param key the packed tile row and column
+     * @return the preferred slot for {@code key} in the table
+     */
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (keys.length - 1);
+    }
+}
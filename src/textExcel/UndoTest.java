@@ -0,0 +1,124 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UndoTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private Spreadsheet sheet;
+    
+    @Before
+    public void createSheet() {
+        sheet = new Spreadsheet();
+    }
+    
+    @Test
+    public void testUndoAndRedoAssignments() {
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("A2 = ( A1 * 10 )");
+        sheet.processCommand("A1 = 2");
+        assertEquals(20, ((FormulaCell) sheet.getCell("A2")).getDoubleValue(), 0);
+        
+        sheet.processCommand("undo");
+        assertEquals("1", sheet.processCommand("A1"));
+        // formulas follow the cells put back
+        assertEquals(10, ((FormulaCell) sheet.getCell("A2")).getDoubleValue(), 0);
+        sheet.processCommand("undo");
+        assertEquals("", sheet.processCommand("A2"));
+        
+        sheet.processCommand("redo");
+        sheet.processCommand("redo");
+        assertEquals("2", sheet.processCommand("A1"));
+        assertEquals(20, ((FormulaCell) sheet.getCell("A2")).getDoubleValue(), 0);
+        assertEquals("ERROR: nothing to redo", sheet.processCommand("redo"));
+    }
+    
+    @Test
+    public void testNothingToUndo() {
+        assertEquals("ERROR: nothing to undo", sheet.processCommand("undo"));
+        assertEquals("ERROR: nothing to redo", sheet.processCommand("redo"));
+        // commands that fail or change nothing leave nothing to undo
+        sheet.processCommand("A1 = ( Z99 + 1 )");
+        sheet.processCommand("clear A1");
+        sheet.processCommand("A1");
+        assertEquals("ERROR: nothing to undo", sheet.processCommand("undo"));
+    }
+    
+    @Test
+    public void testNewEditDropsRedo() {
+        sheet.processCommand("A1 = 1");
+        sheet.processCommand("A1 = 2");
+        sheet.processCommand("undo");
+        sheet.processCommand("B1 = 5");
+        assertEquals("ERROR: nothing to redo", sheet.processCommand("redo"));
+        assertEquals("1", sheet.processCommand("A1"));
+    }
+    
+    @Test
+    public void testUndoLimit() {
+        for (int i = 1; i <= 150; i++) sheet.processCommand("A1 = " + i);
+        for (int i = 0; i < 100; i++) assertFalse(sheet.processCommand("undo").startsWith("ERROR"));
+        assertEquals("ERROR: nothing to undo", sheet.processCommand("undo"));
+        // only the last 100 changes can be undone
+        assertEquals("50", sheet.processCommand("A1"));
+    }
+    
+    @Test
+    public void testWholeCommandsUndoAtOnce() {
+        sheet.processCommand("A1 = 3");
+        sheet.processCommand("A2 = 1");
+        sheet.processCommand("A3 = 2");
+        sheet.processCommand("sorta A1-A3");
+        assertEquals("1", sheet.processCommand("A1"));
+        sheet.processCommand("undo");
+        assertEquals("3", sheet.processCommand("A1"));
+        assertEquals("1", sheet.processCommand("A2"));
+        assertEquals("2", sheet.processCommand("A3"));
+        
+        sheet.processCommand("clear");
+        assertEquals("", sheet.processCommand("A3"));
+        sheet.processCommand("undo");
+        assertEquals("3", sheet.processCommand("A1"));
+        assertEquals("2", sheet.processCommand("A3"));
+    }
+    
+    @Test
+    public void testUndoLoad() throws IOException {
+        Path csv = folder.getRoot().toPath().resolve("data.csv");
+        Files.write(csv, "7,8\n9,\n".getBytes(StandardCharsets.UTF_8));
+        sheet.processCommand("B2 = \"old\"");
+        sheet.processCommand("load " + csv + " A1");
+        assertEquals("8", sheet.processCommand("B1"));
+        assertEquals("", sheet.processCommand("B2"));
+        
+        sheet.processCommand("undo");
+        assertEquals("", sheet.processCommand("A1"));
+        assertEquals("", sheet.processCommand("B1"));
+        assertEquals("\"old\"", sheet.processCommand("B2"));
+    }
+    
+    @Test
+    public void testOpenCantBeUndone() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("sheet.bin");
+        sheet.processCommand("A1 = 1");
+        sheet.save(file);
+        sheet.processCommand("A1 = 2");
+        sheet.processCommand("open " + file);
+        assertEquals("ERROR: nothing to undo", sheet.processCommand("undo"));
+        assertEquals("1", sheet.processCommand("A1"));
+    }
+}
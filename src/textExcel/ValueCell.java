@@ -20,7 +20,7 @@ public class ValueCell extends RealCell {
      * @return text for spreadsheet cell display, must be exactly length 10
      */
     @Override
-    public String abbreviatedCellText() {
+    protected String abbreviate() {
         String abbr;
         if (fullPrecision == (int) fullPrecision) {
             abbr = (int) fullPrecision + ".0        ";
@@ -0,0 +1,393 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A set of named spreadsheets kept in a directory as one sheet file each, whose formulas can read each other
+ *
+ * Commands run on the active sheet. A formula reads another sheet with a reference like Sheet2!B3, or a range
+ * like SUM Sheet2!A1-B4. Sheets are only kept in memory while they are in use: a sheet is loaded the first time
+ * something reads it, by memory mapping its sheet file, and once more than the limit are loaded the sheets
+ * read longest ago are saved back to their files and dropped.
+ *
+ * Every change a loaded sheet reports is passed on to the loaded sheets with formulas reading it, and after
+ * each command the sheets are recalculated in rounds until nothing is left to pass on. The workbook remembers
+ * which sheets an unloaded sheet reads, and a change to one of those loads it again, which recalculates all
+ * of its formulas, so whatever reads through it on the other sheets is kept up to date.
+ * A reference cycle that spans sheets would keep passing changes around forever, so it is cut off after
+ * a number of rounds and whatever is still waiting to be recalculated is marked as an error, along with
+ * every formula on any sheet reading it.
+ *
+ * Sheets may be loaded while formulas are evaluated on other threads, so looking up a sheet is synchronized.
+ * Otherwise a workbook is meant to be used from one thread.
+ */
+public class Workbook implements Closeable {
+    private static final CommandRegistry<Workbook> COMMANDS = new CommandRegistry<Workbook>()
+            .register("sheet", Workbook::sheetCommand)
+            .register("sheets", (workbook, line) -> workbook.sheetsCommand())
+            .register("unload", Workbook::unloadCommand)
+            .setFallback((workbook, line) -> workbook.active.processCommand(line.rest(0)));
+
+    private static final String SHEET_SUFFIX = ".sheet";
+    private static final String FIRST_SHEET = "Sheet1";
+    private static final int DEFAULT_ROWS = 20;
+    private static final int DEFAULT_COLS = 12;
+    private static final int DEFAULT_MAX_LOADED = 8;
+    private static final int MAX_ROUNDS = 256;
+
+    private final Path directory;
+    private final int maxLoaded;
+    // the name of every sheet, loaded or not, by its lower cased name
+    private final LinkedHashMap<String, String> names = new LinkedHashMap<>();
+    // the loaded sheets by lower cased name, read longest ago first
+    private final LinkedHashMap<String, Spreadsheet> loaded = new LinkedHashMap<>(16, 0.75f, true);
+    // the unloaded sheets with formulas reading each sheet, all by lower cased name
+    private final HashMap<String, HashSet<String>> unloadedReaders = new HashMap<>();
+    private Spreadsheet active;
+    private final CommandLine commandLine = new CommandLine();
+
+    /**
+     * Constructor that opens the workbook in a directory, only the first sheet is loaded
+     * @param directory the directory of sheet files, created if it doesn't exist
+     * @param maxLoaded how many sheets are kept in memory between commands, at least 1
+     * @throws IOException if the directory can't be listed or the first sheet can't be read
+     */
+    public Workbook(Path directory, int maxLoaded) throws IOException {
+        if (maxLoaded < 1) throw new IllegalArgumentException("a workbook has to keep at least one sheet loaded: " + maxLoaded);
+        this.directory = directory;
+        this.maxLoaded = maxLoaded;
+
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SHEET_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String name = fileName.substring(0, fileName.length() - SHEET_SUFFIX.length());
+                if (isValidSheetName(name)) names.put(name.toLowerCase(Locale.ROOT), name);
+            }
+        }
+
+        if (names.isEmpty()) {
+            active = create(FIRST_SHEET, DEFAULT_ROWS, DEFAULT_COLS);
+        } else {
+            active = load(names.values().iterator().next());
+        }
+    }
+
+    /**
+     * @param directory the directory of sheet files, created if it doesn't exist
+     * @throws IOException if the directory can't be listed or the first sheet can't be read
+     */
+    public Workbook(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_LOADED);
+    }
+
+    /**
+     * Runs a command, the workbook's own commands are sheet, sheets and unload, everything else runs on the active sheet
+     * @param command the command
+     * @return the text to display
+     */
+    public String processCommand(String command) {
+        CommandLine line = commandLine.reset(command);
+        if (line.size() == 0) return "";
+
+        String result = COMMANDS.lookup(line).execute(this, line);
+        // the view may have been drawn before other sheets passed their changes back to the active one
+        boolean showedView = result.equals(active.getViewText());
+        if (settle() && showedView) result = active.getViewText();
+
+        String error = unloadLeastRecent();
+        if (error != null) result = result.isEmpty() ? error : result + "\n" + error;
+        return result;
+    }
+
+    /**
+     * @return the sheet commands run on
+     */
+    public Spreadsheet getActiveSheet() {
+        return active;
+    }
+
+    /**
+     * Looks up a sheet, loading it if it isn't loaded
+     * @param name the name of the sheet, ignoring case
+     * @return the sheet, or null if there is no sheet of that name or its file can't be read
+     */
+    public synchronized Spreadsheet getSheet(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        Spreadsheet sheet = loaded.get(key);
+        if (sheet != null || !names.containsKey(key)) return sheet;
+
+        try {
+            return load(names.get(key));
+        } catch (IOException e) {
+            // formulas reading a sheet that can't be read are errors, same as for a sheet that doesn't exist
+            return null;
+        }
+    }
+
+    /**
+     * @param name a possible sheet name
+     * @return true if {@code name} is a letter followed by letters, digits and underscores
+     */
+    public static boolean isValidSheetName(String name) {
+        if (name.isEmpty() || !isAsciiLetter(name.charAt(0))) return false;
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!isAsciiLetter(c) && !(c >= '0' && c <= '9') && c != '_') return false;
+        }
+        return true;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z';
+    }
+
+    /**
+     * Saves every loaded sheet to its file
+     * @throws IOException if a sheet can't be saved, the other sheets are still saved
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Spreadsheet sheet : loaded.values()) {
+            try {
+                save(sheet);
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+            }
+        }
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * sheet name [rows columns], switches to a sheet, creating it with the given size if it doesn't exist
+     */
+    private String sheetCommand(CommandLine line) {
+        if (line.size() != 2 && line.size() != 4) return "ERROR: usage is sheet <name> [rows columns]";
+        String name = line.token(1);
+        if (!isValidSheetName(name)) return "ERROR: invalid sheet name " + name;
+
+        if (names.containsKey(name.toLowerCase(Locale.ROOT))) {
+            if (line.size() == 4) return "ERROR: sheet " + name + " already exists";
+            Spreadsheet sheet = getSheet(name);
+            if (sheet == null) return "ERROR: could not open sheet " + name;
+            active = sheet;
+        } else {
+            int rows = line.size() == 4 ? line.count(2) : DEFAULT_ROWS;
+            int columns = line.size() == 4 ? line.count(3) : DEFAULT_COLS;
+            if (rows < 1 || rows > SpreadsheetLocation.MAX_ROWS || columns < 1 || columns > SpreadsheetLocation.MAX_COLUMNS) {
+                return "ERROR: invalid sheet size";
+            }
+            active = create(name, rows, columns);
+        }
+        return active.getViewText();
+    }
+
+    /**
+     * sheets, lists every sheet, marking the active one and the loaded ones
+     */
+    private String sheetsCommand() {
+        StringBuilder list = new StringBuilder();
+        for (Map.Entry<String, String> entry : names.entrySet()) {
+            if (list.length() > 0) list.append('\n');
+            list.append(entry.getValue());
+            // containsKey doesn't count as reading the sheet, so listing leaves the order of unloading alone
+            if (entry.getKey().equals(active.getName().toLowerCase(Locale.ROOT))) list.append(" (active)");
+            else if (loaded.containsKey(entry.getKey())) list.append(" (loaded)");
+        }
+        return list.toString();
+    }
+
+    /**
+     * unload name, saves a sheet to its file and drops it from memory until it is read again
+     */
+    private String unloadCommand(CommandLine line) {
+        if (line.size() != 2) return "ERROR: usage is unload <name>";
+        String key = line.token(1).toLowerCase(Locale.ROOT);
+        if (!names.containsKey(key)) return "ERROR: no sheet named " + line.token(1);
+
+        Spreadsheet sheet = peek(key);
+        if (sheet == null) return "";
+        if (sheet == active) return "ERROR: can't unload the active sheet";
+        try {
+            unload(key, sheet);
+        } catch (IOException e) {
+            return "ERROR: could not save sheet " + sheet.getName() + ": " + e.getMessage();
+        }
+        return "";
+    }
+
+    /**
+     * Helper method to look up a loaded sheet without counting it as read, unlike loaded.get
+     * @param key the lower cased name of the sheet
+     * @return the sheet, or null if it isn't loaded
+     */
+    private Spreadsheet peek(String key) {
+        for (Map.Entry<String, Spreadsheet> entry : loaded.entrySet()) {
+            if (entry.getKey().equals(key)) return entry.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Helper method to make a new empty sheet
+     * @param name the name of the sheet
+     * @param rows the number of rows
+     * @param columns the number of columns
+     * @return the sheet, already loaded
+     */
+    private Spreadsheet create(String name, int rows, int columns) {
+        names.put(name.toLowerCase(Locale.ROOT), name);
+        Spreadsheet sheet = new Spreadsheet(rows, columns);
+        sheet.attach(this, name);
+        return register(sheet);
+    }
+
+    /**
+     * Helper method to load a sheet from its file
+     * @param name the name of the sheet
+     * @return the sheet, its formulas waiting to be recalculated
+     * @throws IOException if the file can't be read
+     */
+    private synchronized Spreadsheet load(String name) throws IOException {
+        Path file = fileOf(name);
+        if (!Files.exists(file)) return create(name, DEFAULT_ROWS, DEFAULT_COLS);
+
+        // mapping the file only reads its header, the size is needed before the sheet can be made
+        SheetFile saved = SheetFile.open(file);
+        Spreadsheet sheet = new Spreadsheet(saved.getRows(), saved.getCols());
+        // attached first, so formulas reading other sheets are recorded as they are set
+        sheet.attach(this, name);
+        sheet.open(file);
+        return register(sheet);
+    }
+
+    /**
+     * Helper method to start passing on the changes of a newly loaded sheet
+     * Its formulas are already set, they are recalculated with the other pending changes after the command.
+     * @param sheet the sheet
+     * @return the sheet
+     */
+    private synchronized Spreadsheet register(Spreadsheet sheet) {
+        String name = sheet.getName();
+        String key = name.toLowerCase(Locale.ROOT);
+        sheet.setCellListener((row, col, cell) -> cellChanged(name, row, col));
+        loaded.put(key, sheet);
+        // loaded again, its changes are passed on directly
+        for (HashSet<String> readers : unloadedReaders.values()) readers.remove(key);
+        return sheet;
+    }
+
+    /**
+     * Helper method to pass a change on to the loaded sheets reading it
+     * Unloaded sheets reading it are loaded, and pass on their own changes once their formulas are recalculated.
+     * @param name the name of the sheet that changed
+     * @param row the row of the cell that changed
+     * @param col the column of the cell that changed
+     */
+    private synchronized void cellChanged(String name, int row, int col) {
+        for (Spreadsheet sheet : loaded.values()) sheet.sheetCellChanged(name, row, col);
+
+        HashSet<String> readers = unloadedReaders.get(name.toLowerCase(Locale.ROOT));
+        if (readers == null || readers.isEmpty()) return;
+        // loading takes them out of the set
+        for (String reader : new ArrayList<>(readers)) getSheet(reader);
+    }
+
+    /**
+     * Helper method to recalculate the loaded sheets in rounds until no change is left to pass on
+     * @return true if anything was recalculated
+     */
+    private boolean settle() {
+        boolean recalculated = false;
+        for (int round = 0; round < MAX_ROUNDS; round++) {
+            boolean pending = false;
+            // recalculating can load another sheet, so go over a copy
+            for (Spreadsheet sheet : new ArrayList<>(loaded.values())) {
+                if (sheet.hasPendingChanges()) {
+                    sheet.recalculatePending();
+                    pending = true;
+                }
+            }
+            if (!pending) return recalculated;
+            recalculated = true;
+        }
+
+        // changes are still going around, which only a reference cycle across sheets does
+        // the marks are passed on like any change, until every formula in or behind the cycle is marked
+        boolean marking = true;
+        while (marking) {
+            marking = false;
+            for (Spreadsheet sheet : new ArrayList<>(loaded.values())) {
+                if (sheet.hasPendingChanges()) {
+                    sheet.markPendingCircular();
+                    marking = true;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Helper method to unload the sheets read longest ago until no more than the limit are loaded
+     * @return an error if a sheet couldn't be saved, or null
+     */
+    private String unloadLeastRecent() {
+        Iterator<Map.Entry<String, Spreadsheet>> sheets = new ArrayList<>(loaded.entrySet()).iterator();
+        while (loaded.size() > maxLoaded && sheets.hasNext()) {
+            Map.Entry<String, Spreadsheet> entry = sheets.next();
+            if (entry.getValue() == active) continue;
+            try {
+                unload(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                // it stays loaded, saving is tried again after the next command
+                return "ERROR: could not save sheet " + entry.getValue().getName() + ": " + e.getMessage();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Helper method to save a sheet and drop it from memory
+     * @param key the lower cased name of the sheet
+     * @param sheet the sheet
+     * @throws IOException if the sheet can't be saved, it stays loaded
+     */
+    private synchronized void unload(String key, Spreadsheet sheet) throws IOException {
+        save(sheet);
+        loaded.remove(key);
+        for (String read : sheet.getReadSheets()) unloadedReaders.computeIfAbsent(read, readers -> new HashSet<>()).add(key);
+    }
+
+    /**
+     * Helper method to save a sheet to its file
+     * @param sheet the sheet
+     * @throws IOException if writing fails
+     */
+    private void save(Spreadsheet sheet) throws IOException {
+        sheet.save(fileOf(sheet.getName()));
+    }
+
+    /**
+     * @param name the name of a sheet
+     * @return the file the sheet is saved in
+     */
+    private Path fileOf(String name) {
+        return directory.resolve(name + SHEET_SUFFIX);
+    }
+}
@@ -0,0 +1,195 @@
+// Sebastian Law
+// 2026.10.18
+
+package textExcel;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WorkbookTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private Path directory;
+    
+    @Before
+    public void createDirectory() {
+        directory = folder.getRoot().toPath().resolve("book");
+    }
+    
+    /**
+     * @param workbook the workbook
+     * @param sheet the name of a sheet
+     * @param cell the name of a formula cell on that sheet
+     * @return the formula
+     */
+    private static FormulaCell formula(Workbook workbook, String sheet, String cell) {
+        return (FormulaCell) workbook.getSheet(sheet).getCell(cell);
+    }
+    
+    @Test
+    public void testCrossSheetReferences() throws IOException {
+        try (Workbook workbook = new Workbook(directory)) {
+            workbook.processCommand("A1 = 2");
+            workbook.processCommand("A2 = 3");
+            workbook.processCommand("sheet Data");
+            workbook.processCommand("A1 = ( Sheet1!A1 * 10 )");
+            workbook.processCommand("A2 = ( SUM sheet1!A1-A2 )");
+            assertEquals(20, formula(workbook, "Data", "A1").getDoubleValue(), 0);
+            assertEquals(5, formula(workbook, "Data", "A2").getDoubleValue(), 0);
+            
+            // changes are passed on to the sheets reading them
+            workbook.processCommand("sheet Sheet1");
+            workbook.processCommand("A1 = 4");
+            assertEquals(40, formula(workbook, "Data", "A1").getDoubleValue(), 0);
+            assertEquals(7, formula(workbook, "Data", "A2").getDoubleValue(), 0);
+            
+            // and back again onto the active sheet, which shows the new value straight away
+            workbook.processCommand("B1 = ( Data!A1 + 1 )");
+            String view = workbook.processCommand("A1 = 5");
+            assertEquals(51, formula(workbook, "Sheet1", "B1").getDoubleValue(), 0);
+            assertTrue(view.split("\n")[1].startsWith("1  |5.0       |51.0      |"));
+            
+            assertTrue(workbook.processCommand("C1 = ( Nowhere!A1 + 1 )").startsWith("ERROR"));
+        }
+    }
+    
+    @Test
+    public void testCrossSheetCycle() throws IOException {
+        try (Workbook workbook = new Workbook(directory)) {
+            workbook.processCommand("sheet Data");
+            workbook.processCommand("A1 = 1");
+            workbook.processCommand("sheet Sheet1");
+            workbook.processCommand("A1 = ( Data!A1 + 1 )");
+            assertEquals(2, formula(workbook, "Sheet1", "A1").getDoubleValue(), 0);
+            workbook.processCommand("sheet Viewer");
+            workbook.processCommand("A1 = ( Sheet1!A1 * 2 )");
+            
+            workbook.processCommand("sheet Data");
+            workbook.processCommand("A1 = ( Sheet1!A1 + 1 )");
+            // both sides of the cycle are errors, and so is everything reading it
+            assertTrue(formula(workbook, "Sheet1", "A1").hasError());
+            assertTrue(formula(workbook, "Data", "A1").hasError());
+            assertTrue(formula(workbook, "Viewer", "A1").hasError());
+            
+            // breaking the cycle brings them all back
+            workbook.processCommand("A1 = 7");
+            assertEquals(8, formula(workbook, "Sheet1", "A1").getDoubleValue(), 0);
+            assertEquals(16, formula(workbook, "Viewer", "A1").getDoubleValue(), 0);
+        }
+    }
+    
+    @Test
+    public void testSaveAndReopen() throws IOException {
+        try (Workbook workbook = new Workbook(directory)) {
+            workbook.processCommand("A1 = 6");
+            workbook.processCommand("sheet Wide 5 30");
+            workbook.processCommand("AD5 = ( Sheet1!A1 / 2 )");
+            workbook.processCommand("A1 = \"note\"");
+        }
+        assertTrue(Files.exists(directory.resolve("Sheet1.sheet")));
+        assertTrue(Files.exists(directory.resolve("Wide.sheet")));
+        
+        try (Workbook workbook = new Workbook(directory)) {
+            workbook.processCommand("sheet Wide");
+            Spreadsheet wide = workbook.getActiveSheet();
+            assertEquals(5, wide.getRows());
+            assertEquals(30, wide.getCols());
+            assertEquals("\"note\"", workbook.processCommand("A1"));
+            // loaded formulas are recalculated after the command that loaded them
+            assertEquals(3, formula(workbook, "Wide", "AD5").getDoubleValue(), 0);
+        }
+    }
+    
+    @Test
+    public void testUnload() throws IOException {
+        try (Workbook workbook = new Workbook(directory, 1)) {
+            workbook.processCommand("A1 = 1");
+            workbook.processCommand("sheet Other");
+            workbook.processCommand("A1 = 2");
+            // only the active sheet stays loaded
+            assertEquals("Sheet1\nOther (active)", workbook.processCommand("sheets"));
+            
+            workbook.processCommand("B1 = ( Sheet1!A1 + A1 )");
+            assertEquals(3, formula(workbook, "Other", "B1").getDoubleValue(), 0);
+            assertEquals("Sheet1\nOther (active)", workbook.processCommand("sheets"));
+            
+            assertEquals("ERROR: can't unload the active sheet", workbook.processCommand("unload other"));
+            assertEquals("ERROR: no sheet named Third", workbook.processCommand("unload Third"));
+            assertEquals("", workbook.processCommand("unload Sheet1"));
+        }
+    }
+    
+    /**
+     * Helper method to set up Sheet1!C1 reading Sheet1!A1 through Other, then leave Other unloaded
+     * @param workbook the workbook, with Sheet1 active
+     * @param evict true to leave unloading Other to the workbook, false to unload it with the unload command
+     */
+    private static void readThroughOther(Workbook workbook, boolean evict) {
+        workbook.processCommand("A1 = 5");
+        workbook.processCommand("sheet Other");
+        workbook.processCommand("A1 = ( Sheet1!A1 * 10 )");
+        workbook.processCommand("sheet Sheet1");
+        workbook.processCommand("C1 = ( Other!A1 + 0 )");
+        assertEquals(50, formula(workbook, "Sheet1", "C1").getDoubleValue(), 0);
+        if (!evict) workbook.processCommand("unload Other");
+        assertEquals("Sheet1 (active)\nOther", workbook.processCommand("sheets"));
+    }
+    
+    @Test
+    public void testReadingThroughAnUnloadedSheet() throws IOException {
+        try (Workbook workbook = new Workbook(directory)) {
+            readThroughOther(workbook, false);
+            // Other is loaded again to pass the change on
+            String view = workbook.processCommand("A1 = 6");
+            assertTrue(view.split("\n")[1].startsWith("1  |6.0       |          |60.0      |"));
+        }
+    }
+    
+    @Test
+    public void testReadingThroughAnEvictedSheet() throws IOException {
+        try (Workbook workbook = new Workbook(directory, 1)) {
+            readThroughOther(workbook, true);
+            workbook.processCommand("A1 = 6");
+            assertEquals(60, formula(workbook, "Sheet1", "C1").getDoubleValue(), 0);
+            // and unloaded again once the change has been passed on
+            assertEquals("Sheet1 (active)\nOther", workbook.processCommand("sheets"));
+            workbook.processCommand("A1 = 7");
+            assertEquals(70, formula(workbook, "Sheet1", "C1").getDoubleValue(), 0);
+        }
+    }
+    
+    @Test
+    public void testListingKeepsUnloadOrder() throws IOException {
+        try (Workbook workbook = new Workbook(directory, 2)) {
+            workbook.processCommand("sheet Other");
+            workbook.processCommand("sheet Sheet1");
+            // listing the sheets doesn't count as reading them, Other is still the one read longest ago
+            workbook.processCommand("unload Sheet1");
+            workbook.processCommand("sheets");
+            workbook.processCommand("sheet Third");
+            assertEquals("Sheet1 (loaded)\nOther\nThird (active)", workbook.processCommand("sheets"));
+        }
+    }
+    
+    @Test
+    public void testSheetCommandErrors() throws IOException {
+        try (Workbook workbook = new Workbook(directory)) {
+            assertEquals("ERROR: invalid sheet name 2nd", workbook.processCommand("sheet 2nd"));
+            assertEquals("ERROR: sheet sheet1 already exists", workbook.processCommand("sheet sheet1 5 5"));
+            assertEquals("ERROR: invalid sheet size", workbook.processCommand("sheet Big 0 5"));
+            assertTrue(workbook.processCommand("sheet").startsWith("ERROR"));
+            assertEquals("Sheet1 (active)", workbook.processCommand("sheets"));
+        }
+        assertFalse(Workbook.isValidSheetName("Sheet-2"));
+        assertTrue(Workbook.isValidSheetName("q3_Totals"));
+    }
+}